@@ -0,0 +1,38 @@
+import java.util.function.IntSupplier;
+
+/**
+ * A Benchmark is one named operation measured by the BenchmarkRunner.<p>
+ * The operation returns an int worked out from what it did, so the JIT can't throw the work away.
+ */
+
+public class Benchmark {
+    // instance variables
+    private String name;
+    private IntSupplier operation;
+
+    /**
+     * @param name The name shown in reports and used as the key in the JSON results.
+     * @param operation The operation being measured.
+     */
+    public Benchmark(String name, IntSupplier operation) {
+        this.name = name;
+        this.operation = operation;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Runs the operation the given number of times.
+     *
+     * @return A value worked out from every result, to be sunk by the runner.
+     */
+    public int run(long times) {
+        int sink = 0;
+        for (long i = 0; i < times; i++) {
+            sink += operation.getAsInt();
+        }
+        return sink;
+    }
+}
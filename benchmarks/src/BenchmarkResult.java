@@ -0,0 +1,43 @@
+/**
+ * The measured cost of one Benchmark: average time and allocation per operation.
+ */
+
+public class BenchmarkResult {
+    // instance variables
+    private String name;
+    private double nanosPerOp;
+    private double error;
+    private double bytesPerOp;
+
+    public BenchmarkResult(String name, double nanosPerOp, double error, double bytesPerOp) {
+        this.name = name;
+        this.nanosPerOp = nanosPerOp;
+        this.error = error;
+        this.bytesPerOp = bytesPerOp;
+    }
+
+    // accessors
+    public String getName() {
+        return name;
+    }
+
+    public double getNanosPerOp() {
+        return nanosPerOp;
+    }
+
+    public double getError() {
+        return error;
+    }
+
+    public double getBytesPerOp() {
+        return bytesPerOp;
+    }
+
+    /**
+     * @return This result as one JSON object.
+     */
+    public String toJson() {
+        return String.format(java.util.Locale.ROOT, "{\"name\": \"%s\", \"nsPerOp\": %.3f, \"error\": %.3f, \"bytesPerOp\": %.1f}",
+                name, nanosPerOp, error, bytesPerOp);
+    }
+}
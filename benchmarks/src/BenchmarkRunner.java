@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the game's micro-benchmarks and reports time and allocation per operation.<p>
+ * Each benchmark gets warm-up iterations and then measured iterations; allocation is read from the thread's allocated-bytes counter,
+ * which is the same number the JMH GC profiler reports as gc.alloc.rate.norm.<p>
+ * Usage: BenchmarkRunner [-f filter] [-o results.json] [-b baseline.json] [-w warmups] [-i iterations] [-t millisPerIteration]
+ */
+
+public class BenchmarkRunner {
+    // static variables
+    private static volatile int sink; // keeps the JIT from dropping benchmark results
+
+    // instance variables
+    private int warmups = 3;
+    private int iterations = 5;
+    private long iterationNanos = 300_000_000L;
+    private com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * @return Every benchmark, in the order they are reported.
+     */
+    public static List<Benchmark> allBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        HunterBenchmarks.register(benchmarks);
+        ShopBenchmarks.register(benchmarks);
+        TerrainBenchmarks.register(benchmarks);
+        TownBenchmarks.register(benchmarks);
+        RandomBenchmarks.register(benchmarks);
+        PopulationBenchmarks.register(benchmarks);
+        return benchmarks;
+    }
+
+    /**
+     * Measures one benchmark.
+     *
+     * @param benchmark The benchmark to run.
+     * @return The average time and allocation per operation.
+     */
+    public BenchmarkResult measure(Benchmark benchmark) {
+        // find a batch size that takes about a millisecond, so timer calls don't show up in the numbers
+        long batch = 1;
+        while (true) {
+            long start = System.nanoTime();
+            sink += benchmark.run(batch);
+            if (System.nanoTime() - start > 1_000_000L || batch > (1L << 30)) {
+                break;
+            }
+            batch *= 2;
+        }
+
+        for (int i = 0; i < warmups; i++) {
+            runIteration(benchmark, batch);
+        }
+
+        double[] nanosPerOp = new double[iterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long[] timing = runIteration(benchmark, batch);
+            totalBytes += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+            totalOps += timing[1];
+            nanosPerOp[i] = (double) timing[0] / timing[1];
+        }
+
+        double mean = 0;
+        for (double value : nanosPerOp) {
+            mean += value;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        return new BenchmarkResult(benchmark.getName(), mean, error, (double) totalBytes / totalOps);
+    }
+
+    /**
+     * Runs batches until the iteration time is used up.
+     *
+     * @return The elapsed nanoseconds and the number of operations run.
+     */
+    private long[] runIteration(Benchmark benchmark, long batch) {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += benchmark.run(batch);
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[] {elapsed, ops};
+    }
+
+    /**
+     * Reads a results file written by this runner.
+     *
+     * @return The results keyed by benchmark name.
+     */
+    public static Map<String, BenchmarkResult> readResults(Path file) throws IOException {
+        Map<String, BenchmarkResult> results = new LinkedHashMap<>();
+        Pattern entry = Pattern.compile("\\{\"name\": \"([^\"]*)\", \"nsPerOp\": ([0-9.]+), \"error\": ([0-9.]+), \"bytesPerOp\": ([0-9.]+)}");
+        Matcher matcher = entry.matcher(Files.readString(file));
+        while (matcher.find()) {
+            results.put(matcher.group(1), new BenchmarkResult(matcher.group(1), Double.parseDouble(matcher.group(2)),
+                    Double.parseDouble(matcher.group(3)), Double.parseDouble(matcher.group(4))));
+        }
+        return results;
+    }
+
+    /**
+     * Writes results in the format readResults() understands.
+     */
+    public static void writeResults(Path file, List<BenchmarkResult> results) throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            json.append("  ").append(results.get(i).toJson());
+            json.append(i < results.size() - 1 ? ",\n" : "\n");
+        }
+        json.append("]\n");
+        Files.writeString(file, json);
+    }
+
+    public static void main(String[] args) throws IOException {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        String filter = "";
+        Path output = null;
+        Path baselineFile = null;
+        for (int i = 0; i < args.length - 1; i += 2) {
+            if (args[i].equals("-f")) {
+                filter = args[i + 1];
+            } else if (args[i].equals("-o")) {
+                output = Path.of(args[i + 1]);
+            } else if (args[i].equals("-b")) {
+                baselineFile = Path.of(args[i + 1]);
+            } else if (args[i].equals("-w")) {
+                runner.warmups = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-i")) {
+                runner.iterations = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-t")) {
+                runner.iterationNanos = Long.parseLong(args[i + 1]) * 1_000_000L;
+            }
+        }
+
+        Map<String, BenchmarkResult> baseline = new LinkedHashMap<>();
+        if (baselineFile != null && Files.exists(baselineFile)) {
+            baseline = readResults(baselineFile);
+        }
+
+        List<BenchmarkResult> results = new ArrayList<>();
+        System.out.printf("%-40s %12s %10s %12s %10s%n", "Benchmark", "ns/op", "error", "B/op", "vs base");
+        for (Benchmark benchmark : allBenchmarks()) {
+            if (!benchmark.getName().contains(filter)) {
+                continue;
+            }
+            BenchmarkResult result = runner.measure(benchmark);
+            results.add(result);
+            String change = "";
+            BenchmarkResult base = baseline.get(result.getName());
+            if (base != null) {
+                change = String.format("%+.1f%%", 100 * (result.getNanosPerOp() - base.getNanosPerOp()) / base.getNanosPerOp());
+            }
+            System.out.printf("%-40s %12.2f %10.2f %12.1f %10s%n", result.getName(), result.getNanosPerOp(),
+                    result.getError(), result.getBytesPerOp(), change);
+        }
+
+        if (output != null) {
+            writeResults(output, results);
+            System.out.println("results written to " + output);
+        }
+    }
+}
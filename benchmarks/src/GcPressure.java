@@ -0,0 +1,70 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures how much garbage simulated games make: bytes allocated per move, the allocation rate,
+ * and how many young-generation collections it causes.<p>
+ * Games are played on this thread only, so the thread's allocated-bytes counter covers all of the work.<p>
+ * Usage: GcPressure [games] [mode] [seconds of warm-up]
+ */
+
+public class GcPressure {
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000;
+        DifficultyProfile difficulty = DifficultyProfile.forCode(args.length > 1 ? args[1] : "n");
+        int warmupSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Simulation simulation = new Simulation(difficulty, new GreedyStrategy(), 200);
+
+        long warmupEnd = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        long seed = 0;
+        while (System.nanoTime() < warmupEnd) {
+            simulation.play(seed++, new SimulationResult(simulation.getMaxTurns()));
+        }
+
+        SimulationResult result = new SimulationResult(simulation.getMaxTurns());
+        long collectionsBefore = youngCollections();
+        long collectionMillisBefore = youngCollectionMillis();
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (long game = 0; game < games; game++) {
+            simulation.play(seed++, result);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        long collections = youngCollections() - collectionsBefore;
+        long collectionMillis = youngCollectionMillis() - collectionMillisBefore;
+
+        long moves = (long) (result.getAverageTurns() * result.getGames());
+        System.out.printf("mode %s: %,d games, %,d turns in %.2f s%n", difficulty.getCode(), games, moves, seconds);
+        System.out.printf("allocated %,.0f MB: %.1f B/turn, %,.0f B/game, %,.0f MB/s%n",
+                bytes / 1e6, (double) bytes / moves, (double) bytes / games, bytes / 1e6 / seconds);
+        System.out.printf("young collections: %d (%d ms)%n", collections, collectionMillis);
+    }
+
+    private static long youngCollections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (isYoung(collector)) {
+                count += collector.getCollectionCount();
+            }
+        }
+        return count;
+    }
+
+    private static long youngCollectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (isYoung(collector)) {
+                millis += collector.getCollectionTime();
+            }
+        }
+        return millis;
+    }
+
+    private static boolean isYoung(GarbageCollectorMXBean collector) {
+        String name = collector.getName();
+        return name.contains("Young") || name.equals("Copy") || name.equals("PS Scavenge") || name.equals("ParNew");
+    }
+}
@@ -0,0 +1,50 @@
+import java.util.List;
+
+/**
+ * Benchmarks for the Hunter methods called on every turn.
+ */
+
+public class HunterBenchmarks {
+
+    /**
+     * @return A hunter carrying a typical mid-game kit and two treasures.
+     */
+    static Hunter typicalHunter() {
+        Hunter hunter = new Hunter("bench", 25);
+        hunter.addItem("water");
+        hunter.addItem("rope");
+        hunter.addItem("horse");
+        hunter.addItem("shovel");
+        hunter.addTreasure("Crown");
+        hunter.addTreasure("Gem");
+        return hunter;
+    }
+
+    public static void register(List<Benchmark> benchmarks) {
+        Hunter hunter = typicalHunter();
+
+        benchmarks.add(new Benchmark("Hunter.hasItemInKit.hit", () -> hunter.hasItemInKit("shovel") ? 1 : 0));
+        benchmarks.add(new Benchmark("Hunter.hasItemInKit.miss", () -> hunter.hasItemInKit("boat") ? 1 : 0));
+        benchmarks.add(new Benchmark("Hunter.hasAllTreasure", () -> hunter.hasAllTreasure() ? 1 : 0));
+        benchmarks.add(new Benchmark("Hunter.addItem+removeItemFromKit", () -> {
+            boolean added = hunter.addItem("boots");
+            hunter.removeItemFromKit("boots");
+            return added ? 1 : 0;
+        }));
+        benchmarks.add(new Benchmark("Hunter.getInventory", () -> hunter.getInventory().length()));
+        benchmarks.add(new Benchmark("Hunter.toString", () -> hunter.toString().length()));
+        StringBuilder status = new StringBuilder();
+        benchmarks.add(new Benchmark("Hunter.appendTo", () -> {
+            status.setLength(0);
+            hunter.appendTo(status);
+            return status.length();
+        }));
+
+        // a turn that changes gold has to render the status line again
+        Hunter brawler = typicalHunter();
+        benchmarks.add(new Benchmark("Hunter.changeGold+toString", () -> {
+            brawler.changeGold(brawler.getGold() > 50 ? -40 : 1);
+            return brawler.toString().length();
+        }));
+    }
+}
@@ -0,0 +1,114 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Puts a Market under many concurrent traders: every trader has its own thread, hunter and headless Shop on the shared
+ * market, and trades as fast as it can while the market ticks.<p>
+ * It reports trades per second, how long a price read takes, and checks that the market counted every trade made.<p>
+ * Usage: MarketContention [traders] [seconds] [tickMillis]
+ */
+
+public class MarketContention {
+    // constants
+    private static final String[] ITEMS = {"water", "rope", "machete", "horse", "boat", "boots", "shovel"};
+
+    public static void main(String[] args) throws InterruptedException {
+        int traders = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long tickMillis = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        DifficultyProfile difficulty = DifficultyProfile.NORMAL;
+        Market market = new Market(Shop.DEFAULT_CATALOG);
+        ThreadMXBean threadTimes = ManagementFactory.getThreadMXBean();
+        market.start(tickMillis);
+
+        LongAdder trades = new LongAdder();
+        LongAdder priceReads = new LongAdder();
+        LongAdder priceReadNanos = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(traders);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] end = new long[1];
+        Thread[] threads = new Thread[traders];
+        for (int t = 0; t < traders; t++) {
+            int trader = t;
+            threads[t] = new Thread(null, () -> {
+                Shop shop = new Shop(difficulty);
+                shop.setMarket(market);
+                Hunter hunter = new Hunter("trader" + trader, Integer.MAX_VALUE / 2);
+                // a third only buy water and use it up, a third only sell boats they found, and the rest buy and sell anything,
+                // so water's price should climb, boats' fall and the rest stay near the catalog's
+                int role = trader % 3;
+                SplittableRandomSource random = new SplittableRandomSource(trader);
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0;
+                long iteration = 0;
+                while (System.nanoTime() < end[0]) {
+                    if (iteration++ % 256 == 0) {
+                        // CPU time, so the reads aren't charged for time spent waiting for the CPU behind other traders
+                        long start = threadTimes.getCurrentThreadCpuTime();
+                        int sum = 0;
+                        for (int i = 0; i < 1000; i++) {
+                            sum += shop.getCostOfItem(ITEMS[i % ITEMS.length]);
+                        }
+                        priceReadNanos.add(threadTimes.getCurrentThreadCpuTime() - start + (sum & 0));
+                        priceReads.add(1000);
+                    }
+                    if (role == 0) {
+                        count += buy(shop, hunter, "water");
+                        hunter.removeItemFromKit("water");
+                    } else if (role == 1) {
+                        hunter.addItem("boat");
+                        count += sell(shop, hunter, "boat");
+                    } else {
+                        String item = ITEMS[(int) (random.nextDouble() * ITEMS.length)];
+                        count += buy(shop, hunter, item) + sell(shop, hunter, item);
+                    }
+                }
+                trades.add(count);
+            }, "trader-" + t, 64 * 1024);
+            threads[t].start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        end[0] = start + seconds * 1_000_000_000L;
+        go.countDown();
+        // the prices as trading ends; once it has, the volumes decay and prices drift back to the catalog's
+        Thread.sleep(seconds * 1000L);
+        String prices = market.toString();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        market.stop();
+
+        System.out.printf("%,d traders: %,.0f trades/sec, price read %.0f ns on average%n", traders,
+                trades.sum() / elapsed, (double) priceReadNanos.sum() / priceReads.sum());
+        System.out.println(prices);
+        System.out.println(market.getTrades() == trades.sum() ? "market counted every one of the " + trades.sum() + " trades"
+                : "market counted " + market.getTrades() + " trades, but " + trades.sum() + " were made");
+    }
+
+    /**
+     * @return 1 if the hunter bought the item.
+     */
+    private static int buy(Shop shop, Hunter hunter, String item) {
+        boolean had = hunter.hasItemInKit(item);
+        shop.buyItem(hunter, item);
+        return !had && hunter.hasItemInKit(item) ? 1 : 0;
+    }
+
+    /**
+     * @return 1 if the hunter sold the item.
+     */
+    private static int sell(Shop shop, Hunter hunter, String item) {
+        boolean had = hunter.hasItemInKit(item);
+        shop.sellItem(hunter, item);
+        return had && !hunter.hasItemInKit(item) ? 1 : 0;
+    }
+}
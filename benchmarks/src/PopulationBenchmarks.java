@@ -0,0 +1,56 @@
+import java.util.List;
+
+/**
+ * Benchmarks for the structure-of-arrays HunterPopulation, next to the same greedy turn played on Town and Hunter objects.
+ * Both operations are one turn for LANES hunters, so their times compare directly.
+ */
+
+public class PopulationBenchmarks {
+    // constants
+    private static final int LANES = 1024;
+
+    public static void register(List<Benchmark> benchmarks) {
+        HunterPopulation population = new HunterPopulation(DifficultyProfile.NORMAL, LANES, 42);
+        int[] action = new int[1];
+        benchmarks.add(new Benchmark("HunterPopulation.turn x1024", () -> {
+            switch (action[0]++ % 5) {
+                case 0: population.huntForTreasure(); return 0;
+                case 1: population.digForGold(); return 1;
+                case 2: population.buyNeededItem(); return 2;
+                case 3: return population.leaveTown();
+                default: population.lookForTrouble(); return population.getGold(0);
+            }
+        }));
+
+        Shop shop = Shop.shared(DifficultyProfile.NORMAL);
+        Hunter[] hunters = new Hunter[LANES];
+        Town[] towns = new Town[LANES];
+        for (int lane = 0; lane < LANES; lane++) {
+            hunters[lane] = DifficultyProfile.NORMAL.newHunter("lane" + lane);
+            towns[lane] = new Town(shop, DifficultyProfile.NORMAL, TreasureHunter.TREASURES, new SplittableRandomSource(42 + lane));
+            towns[lane].hunterArrives(hunters[lane]);
+        }
+        int[] objectAction = new int[1];
+        benchmarks.add(new Benchmark("Town.turn x1024", () -> {
+            int step = objectAction[0]++ % 5;
+            int moved = 0;
+            for (int lane = 0; lane < LANES; lane++) {
+                Town town = towns[lane];
+                switch (step) {
+                    case 0: town.huntForTreasure(); break;
+                    case 1: town.digForGold(); break;
+                    case 2: hunters[lane].buyItem(town.getTerrain().getNeededItem(), shop.getCostOfItem(town.getTerrain().getNeededItem())); break;
+                    case 3:
+                        if (town.leaveTown()) {
+                            town.reset();
+                            town.hunterArrives(hunters[lane]);
+                            moved++;
+                        }
+                        break;
+                    default: town.lookForTrouble(); break;
+                }
+            }
+            return moved;
+        }));
+    }
+}
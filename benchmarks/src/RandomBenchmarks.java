@@ -0,0 +1,15 @@
+import java.util.List;
+
+/**
+ * Compares the per-game RandomSource with the shared Math.random() generator it replaced.
+ */
+
+public class RandomBenchmarks {
+
+    public static void register(List<Benchmark> benchmarks) {
+        RandomSource random = new SplittableRandomSource(42);
+
+        benchmarks.add(new Benchmark("Random.Math.random", () -> (int) (Math.random() * 20)));
+        benchmarks.add(new Benchmark("Random.SplittableRandomSource", () -> (int) (random.nextDouble() * 20)));
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures SharedTown under contention: a fixed number of hunters, spread over fewer and fewer towns, so the
+ * number of hunters racing for each town's claims goes from 1 to 1000.<p>
+ * In every round each hunter enters its town, hunts, digs and looks for trouble there, then a fresh set of towns is rolled.
+ * Every hunter plays through a Town of their own, as a game in the shared world does, so the Town metrics are counted too.
+ * Hunter i is in town i % towns and is played by thread i % threads, so each town's hunters are spread over every thread.
+ * Only the rounds are timed. Every round must end with exactly one search and one dig per town, which is checked
+ * from the claims the SharedTowns counted as lost.<p>
+ * Usage: SharedTownContention [threads] [hunters] [seconds per level]
+ */
+
+public class SharedTownContention {
+    // constants
+    private static final int[] HUNTERS_PER_TOWN = {1, 10, 100, 1000};
+    private static final LongAdder HUNTS_LOST = Metrics.counter("town.shared.huntLost");
+    private static final LongAdder DIGS_LOST = Metrics.counter("town.shared.digLost");
+
+    public static void main(String[] args) throws InterruptedException, BrokenBarrierException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int hunterCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        DifficultyProfile difficulty = DifficultyProfile.NORMAL;
+        Shop shop = Shop.shared(difficulty);
+
+        System.out.printf("%d threads, %,d hunters%n", threads, hunterCount);
+        System.out.printf("%16s %8s %10s %22s%n", "hunters/town", "towns", "rounds", "hunter-actions/sec");
+        for (int perTown : HUNTERS_PER_TOWN) {
+            int towns = Math.max(1, hunterCount / perTown);
+            Hunter[] hunters = new Hunter[hunterCount];
+            Town[] views = new Town[hunterCount];
+            for (int i = 0; i < hunterCount; i++) {
+                hunters[i] = new Hunter("h" + i, difficulty.getStartingGold(), 1L << Items.SHOVEL, 0);
+                views[i] = new Town(shop, difficulty, TreasureHunter.TREASURES, new SplittableRandomSource(i));
+            }
+            SharedTown[][] round = new SharedTown[1][];
+            RandomSource townRandom = new SplittableRandomSource(perTown);
+            long huntsLostBefore = HUNTS_LOST.sum();
+            long digsLostBefore = DIGS_LOST.sum();
+            CyclicBarrier start = new CyclicBarrier(threads + 1);
+            CyclicBarrier end = new CyclicBarrier(threads + 1);
+            boolean[] running = {true};
+
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                workers[t] = new Thread(() -> {
+                    try {
+                        while (true) {
+                            start.await();
+                            if (!running[0]) {
+                                return;
+                            }
+                            SharedTown[] inTown = round[0];
+                            for (int i = first; i < hunterCount; i += threads) {
+                                Town town = views[i];
+                                town.enter(inTown[i % towns]);
+                                town.hunterArrives(hunters[i]);
+                                town.huntForTreasure();
+                                town.digForGold();
+                                town.lookForTrouble();
+                            }
+                            end.await();
+                        }
+                    } catch (InterruptedException | BrokenBarrierException e) {
+                        // the benchmark is over
+                    }
+                });
+                workers[t].start();
+            }
+
+            long rounds = 0;
+            long timed = 0;
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            while (System.nanoTime() < deadline) {
+                SharedTown[] fresh = new SharedTown[towns];
+                for (int town = 0; town < towns; town++) {
+                    fresh[town] = SharedTown.roll(difficulty, townRandom);
+                }
+                round[0] = fresh;
+                long roundStart = System.nanoTime();
+                start.await();
+                end.await();
+                timed += System.nanoTime() - roundStart;
+                rounds++;
+            }
+            running[0] = false;
+            start.await();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            long claims = rounds * hunterCount;
+            long searches = claims - (HUNTS_LOST.sum() - huntsLostBefore);
+            long digs = claims - (DIGS_LOST.sum() - digsLostBefore);
+            boolean exact = searches == rounds * towns && digs == rounds * towns;
+            System.out.printf("%16d %8d %10d %22.0f%s%n", perTown, towns, rounds, 3.0 * rounds * hunterCount / (timed / 1e9),
+                    exact ? "" : "  claims don't add up: " + searches + " searches, " + digs + " digs");
+        }
+    }
+}
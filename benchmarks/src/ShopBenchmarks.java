@@ -0,0 +1,20 @@
+import java.util.List;
+
+/**
+ * Benchmarks for the Shop's price lookups and inventory listing.
+ */
+
+public class ShopBenchmarks {
+
+    public static void register(List<Benchmark> benchmarks) {
+        Shop shop = new Shop(DifficultyProfile.NORMAL);
+        Shop samuraiShop = new Shop(DifficultyProfile.SAMURAI);
+
+        // shovel is the last branch of the price lookup, so it is the slowest item to find
+        benchmarks.add(new Benchmark("Shop.getCostOfItem.shovel", () -> shop.getCostOfItem("shovel")));
+        benchmarks.add(new Benchmark("Shop.getCostOfItem.unknown", () -> shop.getCostOfItem("lamp")));
+        benchmarks.add(new Benchmark("Shop.checkMarketPrice.sell", () -> shop.checkMarketPrice("boat", false)));
+        benchmarks.add(new Benchmark("Shop.inventory", () -> shop.inventory().length()));
+        benchmarks.add(new Benchmark("Shop.inventory.samurai", () -> samuraiShop.inventory().length()));
+    }
+}
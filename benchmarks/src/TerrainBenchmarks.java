@@ -0,0 +1,17 @@
+import java.util.List;
+
+/**
+ * Benchmarks for crossing terrain.
+ */
+
+public class TerrainBenchmarks {
+
+    public static void register(List<Benchmark> benchmarks) {
+        Hunter hunter = HunterBenchmarks.typicalHunter();
+        Terrain plains = new Terrain("Plains", "Horse");
+        Terrain ocean = new Terrain("Ocean", "Boat");
+
+        benchmarks.add(new Benchmark("Terrain.canCrossTerrain.yes", () -> plains.canCrossTerrain(hunter) ? 1 : 0));
+        benchmarks.add(new Benchmark("Terrain.canCrossTerrain.no", () -> ocean.canCrossTerrain(hunter) ? 1 : 0));
+    }
+}
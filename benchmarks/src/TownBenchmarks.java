@@ -0,0 +1,44 @@
+import java.util.List;
+
+/**
+ * Benchmarks for whole turns through Town, including the news message each action builds.
+ */
+
+public class TownBenchmarks {
+
+    public static void register(List<Benchmark> benchmarks) {
+        RandomSource random = new SplittableRandomSource(42);
+        Shop shop = new Shop(DifficultyProfile.NORMAL);
+        Hunter hunter = HunterBenchmarks.typicalHunter();
+
+        Town town = new Town(shop, DifficultyProfile.NORMAL, TreasureHunter.TREASURES, random);
+        town.hunterArrives(hunter);
+
+        benchmarks.add(new Benchmark("Town.lookForTrouble", () -> {
+            town.lookForTrouble();
+            return town.getLatestNews().length();
+        }));
+
+        // a town can only be dug once, so each operation includes arriving in a new town
+        benchmarks.add(new Benchmark("Town.new+hunterArrives+digForGold", () -> {
+            Town newTown = new Town(shop, DifficultyProfile.NORMAL, TreasureHunter.TREASURES, random);
+            newTown.hunterArrives(hunter);
+            newTown.digForGold();
+            return newTown.getLatestNews().length();
+        }));
+
+        // what a move does: the town becomes the next town and the hunter arrives in it
+        Town movingTown = new Town(shop, DifficultyProfile.NORMAL, TreasureHunter.TREASURES, random);
+        benchmarks.add(new Benchmark("Town.move", () -> {
+            movingTown.reset();
+            movingTown.hunterArrives(hunter);
+            return movingTown.getTerrainId();
+        }));
+
+        // the item may break on the way out, so it is handed back before every attempt
+        benchmarks.add(new Benchmark("Town.leaveTown", () -> {
+            hunter.addItem(town.getTerrain().getNeededItem());
+            return town.leaveTown() ? 1 : 0;
+        }));
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads lines from a non-blocking channel, such as a network connection, without ever waiting for them.<p>
+ * poll() hands back a line once the whole of it has arrived and null straight away otherwise, so one thread can
+ * read any number of connections, each whenever its Selector says it has something (see GameServer). The game is
+ * then given each line with TreasureHunter.accept(), and nothing holds a thread while a player is thinking.<p>
+ * Lines end like BufferedReader's (a newline, a carriage return, or both) and are read as UTF-8. A line longer than
+ * the limit is never held in memory; reading it throws a StreamInput.LineTooLongException as soon as it goes past the limit.
+ */
+
+public class ChannelInput {
+    // instance variables
+    private ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private byte[] line;
+    private int lineLength;
+    private int maxLineBytes;
+    private boolean skipNewline; // the last line ended with a carriage return, so a newline straight after it is part of the ending
+    private boolean ended;
+
+    /**
+     * @param channel The channel, in non-blocking mode.
+     * @param bufferSize The size of the read buffer in bytes; small buffers keep many idle connections cheap.
+     * @param maxLineBytes The longest line accepted in bytes, not counting its line ending.
+     */
+    public ChannelInput(ReadableByteChannel channel, int bufferSize, int maxLineBytes) {
+        this.channel = channel;
+        this.maxLineBytes = maxLineBytes;
+        buffer = ByteBuffer.allocate(bufferSize);
+        buffer.flip();
+        line = new byte[Math.min(maxLineBytes, bufferSize)];
+    }
+
+    /**
+     * Returns the next line if all of it has arrived, reading whatever the channel has without waiting for more.
+     *
+     * @return The line, or null if no whole line has arrived yet or the input has ended (see isEnded()).
+     * @throws IOException if reading fails or the line is longer than the limit.
+     */
+    public String poll() throws IOException {
+        while (true) {
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n' && skipNewline) {
+                    skipNewline = false;
+                    continue;
+                }
+                skipNewline = b == '\r';
+                if (b == '\n' || b == '\r') {
+                    return takeLine();
+                }
+                append(b);
+            }
+            if (ended) {
+                return null;
+            }
+            buffer.clear();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read < 0) {
+                ended = true;
+                // the last line needn't end with a newline
+                return lineLength == 0 ? null : takeLine();
+            }
+            if (read == 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return true once the other end has closed the channel and every line has been polled.
+     */
+    public boolean isEnded() {
+        return ended && !buffer.hasRemaining() && lineLength == 0;
+    }
+
+    private void append(byte b) throws IOException {
+        if (lineLength == maxLineBytes) {
+            throw new StreamInput.LineTooLongException(maxLineBytes);
+        }
+        if (lineLength == line.length) {
+            line = Arrays.copyOf(line, Math.min(maxLineBytes, 2 * line.length));
+        }
+        line[lineLength++] = b;
+    }
+
+    private String takeLine() {
+        String text = new String(line, 0, lineLength, StandardCharsets.UTF_8);
+        lineLength = 0;
+        return text;
+    }
+}
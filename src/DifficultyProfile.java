@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A DifficultyProfile holds everything a difficulty mode changes about the game: starting gold, the shop's markdown,
+ * how likely towns are to be tough, whether items can be lost crossing terrain, whether the sword is for sale,
+ * what goes in front of the hunter's name and what is in the hunter's kit from the start.<p>
+ * A profile never changes once made. The game looks one up when the player picks a difficulty and hands the same
+ * object to every town and shop, so nothing during play has to compare mode strings.
+ */
+
+public class DifficultyProfile {
+    public static final DifficultyProfile HARD = new DifficultyProfile("h", "Hard", 10, 0.25, 0.75, true, false, "", 0);
+    public static final DifficultyProfile NORMAL = new DifficultyProfile("n", "Normal", 10, 0.5, 0.4, true, false, "", 0);
+    public static final DifficultyProfile EASY = new DifficultyProfile("e", "Easy", 20, 1, 0.25, false, false, "", 0);
+    public static final DifficultyProfile SAMURAI = new DifficultyProfile("s", "Samurai", 20, 1, 0, true, true, "Samurai ", 0);
+    public static final DifficultyProfile TEST = new DifficultyProfile("test", "Test", 100, 0.5, 0.4, true, false, "", (1L << Items.SWORD) - 1);
+
+    // static variables
+    private static final Map<String, DifficultyProfile> PROFILES = new ConcurrentHashMap<>();
+
+    static {
+        for (DifficultyProfile profile : new DifficultyProfile[] {HARD, NORMAL, EASY, SAMURAI, TEST}) {
+            register(profile);
+        }
+    }
+
+    // instance variables
+    private final String code;
+    private final String name;
+    private final int startingGold;
+    private final double markdown;
+    private final double toughness;
+    private final boolean itemLoss;
+    private final boolean swordForSale;
+    private final String namePrefix;
+    private final long startingKit;
+
+    /**
+     * @param code What the player types to pick the mode.
+     * @param name The mode's name.
+     * @param startingGold The gold a hunter starts with.
+     * @param markdown The part of an item's cost a shop pays when buying it back.
+     * @param toughness The chance of a town being a tough town.
+     * @param itemLoss true if the item used to cross terrain can be lost.
+     * @param swordForSale true if shops list (and sell) the sword.
+     * @param namePrefix Put in front of the hunter's name, e.g. "Samurai ".
+     * @param startingKit The items the hunter starts with, one bit per item id (see Items).
+     */
+    public DifficultyProfile(String code, String name, int startingGold, double markdown, double toughness,
+                             boolean itemLoss, boolean swordForSale, String namePrefix, long startingKit) {
+        this.code = code;
+        this.name = name;
+        this.startingGold = startingGold;
+        this.markdown = markdown;
+        this.toughness = toughness;
+        this.itemLoss = itemLoss;
+        this.swordForSale = swordForSale;
+        this.namePrefix = namePrefix;
+        this.startingKit = startingKit;
+    }
+
+    /**
+     * Looks up a profile by the code the player typed.
+     *
+     * @param code The code, e.g. "h".
+     * @return The profile, or NORMAL for any code that isn't a mode, like the game always did.
+     */
+    public static DifficultyProfile forCode(String code) {
+        DifficultyProfile profile = code == null ? null : PROFILES.get(code.toLowerCase());
+        return profile == null ? NORMAL : profile;
+    }
+
+    /**
+     * Looks up a registered profile by its exact code, without falling back to NORMAL.
+     *
+     * @param code The code, e.g. "h".
+     * @return The profile, or null if no profile has that code.
+     */
+    public static DifficultyProfile find(String code) {
+        return PROFILES.get(code.toLowerCase());
+    }
+
+    /**
+     * Makes a profile available to forCode(), replacing any profile with the same code.
+     */
+    public static void register(DifficultyProfile profile) {
+        PROFILES.put(profile.code.toLowerCase(), profile);
+    }
+
+    /**
+     * Reads profiles from a text file with one profile per line: the code followed by key=value settings.
+     * Settings left out are taken from the normal mode; a prefix may use _ for a space. For example:
+     * <pre>
+     * # code  settings
+     * brutal  name=Brutal gold=5 markdown=0.1 toughness=0.9 itemLoss=true sword=false
+     * ronin   name=Ronin gold=15 sword=true prefix=Ronin_ items=water,rope
+     * </pre>
+     * Blank lines and lines starting with # are skipped. The profiles are registered as they are read.
+     *
+     * @param file The profile file.
+     * @return The profiles in the file.
+     */
+    public static List<DifficultyProfile> load(Path file) throws IOException {
+        List<DifficultyProfile> profiles = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            String code = parts[0];
+            String name = code;
+            int gold = NORMAL.startingGold;
+            double markdown = NORMAL.markdown;
+            double toughness = NORMAL.toughness;
+            boolean itemLoss = NORMAL.itemLoss;
+            boolean sword = NORMAL.swordForSale;
+            String prefix = NORMAL.namePrefix;
+            long kit = NORMAL.startingKit;
+            for (int i = 1; i < parts.length; i++) {
+                int equals = parts[i].indexOf('=');
+                if (equals < 0) {
+                    throw new IOException("Bad profile setting: " + parts[i]);
+                }
+                String key = parts[i].substring(0, equals);
+                String value = parts[i].substring(equals + 1);
+                try {
+                    if (key.equals("name")) {
+                        name = value;
+                    } else if (key.equals("gold")) {
+                        gold = Integer.parseInt(value);
+                    } else if (key.equals("markdown")) {
+                        markdown = Double.parseDouble(value);
+                    } else if (key.equals("toughness")) {
+                        toughness = Double.parseDouble(value);
+                    } else if (key.equals("itemLoss")) {
+                        itemLoss = Boolean.parseBoolean(value);
+                    } else if (key.equals("sword")) {
+                        sword = Boolean.parseBoolean(value);
+                    } else if (key.equals("prefix")) {
+                        prefix = value.replace('_', ' ');
+                    } else if (key.equals("items")) {
+                        kit = 0;
+                        for (String item : value.split(",")) {
+                            int id = Items.find(item.toLowerCase());
+                            if (id < 0) {
+                                throw new IOException("Unknown item in profile " + code + ": " + item);
+                            }
+                            kit |= 1L << id;
+                        }
+                    } else {
+                        throw new IOException("Unknown profile setting: " + key);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad profile setting: " + parts[i], e);
+                }
+            }
+            DifficultyProfile profile = new DifficultyProfile(code, name, gold, markdown, toughness, itemLoss, sword, prefix, kit);
+            register(profile);
+            profiles.add(profile);
+        }
+        return profiles;
+    }
+
+    /**
+     * Creates a hunter the way this mode starts one.
+     *
+     * @param hunterName The name the player typed.
+     * @return The hunter, with the mode's prefix, gold and starting kit.
+     */
+    public Hunter newHunter(String hunterName) {
+        return new Hunter(namePrefix + hunterName, startingGold, startingKit, 0);
+    }
+
+    // accessors
+    public String getCode() {
+        return code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStartingGold() {
+        return startingGold;
+    }
+
+    public double getMarkdown() {
+        return markdown;
+    }
+
+    public double getToughness() {
+        return toughness;
+    }
+
+    public boolean hasItemLoss() {
+        return itemLoss;
+    }
+
+    public boolean isSwordForSale() {
+        return swordForSale;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public long getStartingKit() {
+        return startingKit;
+    }
+
+    public String toString() {
+        return name;
+    }
+}
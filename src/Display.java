@@ -0,0 +1,40 @@
+import java.awt.Color;
+
+/**
+ * A Display is where the game's text goes.<p>
+ * The game shows two kinds of text: the menu and status, which are redrawn every turn (addTextToWindow and clear),
+ * and running dialogue like the shop's, which is printed line by line (print and println).
+ * Nothing has to be shown until flush() is called, which the game does before it waits for input.
+ */
+
+public interface Display {
+    /**
+     * Adds text to the menu area in the default color.
+     */
+    void addTextToWindow(String text);
+
+    /**
+     * Adds text to the menu area in the given color.
+     */
+    void addTextToWindow(String text, Color color);
+
+    /**
+     * Empties the menu area so the next turn can be drawn.
+     */
+    void clear();
+
+    /**
+     * Prints dialogue without starting a new line; the text may contain textColor codes.
+     */
+    void print(String message);
+
+    /**
+     * Prints a line of dialogue; the text may contain textColor codes.
+     */
+    void println(String message);
+
+    /**
+     * Shows everything added since the last flush.
+     */
+    void flush();
+}
@@ -0,0 +1,150 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The EventBus carries GameEvents from any number of games to any number of subscribers, each on its own thread.<p>
+ * Events go into a fixed-size ring. Publishing takes the next sequence number from an atomic counter and puts the
+ * event in its slot with a compare-and-set, so publishers never lock and never wait: a game's turn costs the same
+ * whether subscribers keep up or not. Each subscriber follows the ring at its own pace; one that falls more than the
+ * ring's size behind finds its slots already reused, skips what it missed and counts it as dropped, instead of
+ * holding the games up.<p>
+ * A subscriber with nothing to read spins briefly, then parks for a while that doubles each time it wakes to find
+ * nothing new, up to MAX_PARK_NANOS, so an idle subscriber costs next to nothing; it goes back to spinning as soon as
+ * an event arrives. Publishers never wake subscribers, so that publishing stays a counter and a compare-and-set.
+ */
+
+public class EventBus implements EventSink {
+    // constants
+    private static final int SPINS_BEFORE_PARKING = 100;
+    private static final long MIN_PARK_NANOS = 50_000;
+    private static final long MAX_PARK_NANOS = 10_000_000; // the longest an idle subscriber takes to notice a new event
+
+    // instance variables
+    private final AtomicReferenceArray<GameEvent> ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * @param capacity The number of events the ring holds; rounded up to a power of two.
+     */
+    public EventBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        ring = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Publishes an event to every subscriber. Never blocks.
+     *
+     * @param event The event; it must not be published more than once, since the bus sets its sequence number.
+     */
+    public void accept(GameEvent event) {
+        long sequence = nextSequence.getAndIncrement();
+        event.sequence = sequence;
+        int slot = (int) (sequence & mask);
+        // a publisher a whole lap ahead may already have filled the slot, in which case the newer event stays
+        GameEvent old;
+        do {
+            old = ring.get(slot);
+            if (old != null && old.sequence > sequence) {
+                return;
+            }
+        } while (!ring.compareAndSet(slot, old, event));
+    }
+
+    /**
+     * Starts a thread that hands every event published from now on to the given sink, in order.
+     *
+     * @param name The subscriber's name, used for its thread.
+     * @param sink Where the events go.
+     * @return The subscription, for its dropped count.
+     */
+    public Subscription subscribe(String name, EventSink sink) {
+        Subscription subscription = new Subscription(sink, nextSequence.get());
+        Thread thread = new Thread(subscription, "events-" + name);
+        thread.setDaemon(true);
+        subscription.thread = thread;
+        subscriptions.add(subscription);
+        thread.start();
+        return subscription;
+    }
+
+    /**
+     * @return The number of events published so far.
+     */
+    public long getPublished() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Lets every subscriber catch up with what has been published, then stops their threads.
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            LockSupport.unpark(subscription.thread);
+            subscription.thread.join();
+        }
+    }
+
+    /**
+     * One subscriber's place in the ring.
+     */
+    public class Subscription implements Runnable {
+        private final EventSink sink;
+        private long next;
+        private volatile long delivered;
+        private volatile long dropped;
+        private Thread thread;
+
+        Subscription(EventSink sink, long first) {
+            this.sink = sink;
+            next = first;
+        }
+
+        /**
+         * @return The number of events handed to the sink.
+         */
+        public long getDelivered() {
+            return delivered;
+        }
+
+        /**
+         * @return The number of events this subscriber missed because it fell too far behind.
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        public void run() {
+            int idle = 0;
+            long parkNanos = MIN_PARK_NANOS;
+            while (true) {
+                GameEvent event = ring.get((int) (next & mask));
+                if (event != null && event.sequence == next) {
+                    sink.accept(event);
+                    delivered++;
+                    next++;
+                    idle = 0;
+                    parkNanos = MIN_PARK_NANOS;
+                } else if (event != null && event.sequence > next) {
+                    // the slot has been reused: this event is gone
+                    dropped++;
+                    next++;
+                } else if (closed && next >= nextSequence.get()) {
+                    return;
+                } else if (++idle < SPINS_BEFORE_PARKING) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(parkNanos);
+                    parkNanos = Math.min(2 * parkNanos, MAX_PARK_NANOS);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An EventSink that writes every event it gets to a text file, one event per line (see GameEvent.toString()).<p>
+ * It is meant to be subscribed to an EventBus, so the writing happens on the subscriber's thread and never in a turn.
+ */
+
+public class EventLog implements EventSink {
+    // constants
+    private static final long FLUSH_NANOS = 1_000_000_000L;
+
+    // instance variables
+    private BufferedWriter out;
+    private long lastFlush = System.nanoTime();
+
+    /**
+     * @param file The file to write; it is replaced if it exists.
+     */
+    public EventLog(Path file) throws IOException {
+        out = Files.newBufferedWriter(file);
+    }
+
+    public void accept(GameEvent event) {
+        try {
+            out.write(event.toString());
+            out.newLine();
+            // a busy log is still written out at least once a second, so the file is never far behind the game
+            if (System.nanoTime() - lastFlush > FLUSH_NANOS) {
+                out.flush();
+                lastFlush = System.nanoTime();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+}
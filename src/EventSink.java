@@ -0,0 +1,14 @@
+/**
+ * An EventSink takes the GameEvents a game publishes.<p>
+ * The EventBus is one, handing events on to its subscribers, and each subscriber is one too.
+ * A game with no sink publishes nothing and makes no events at all.
+ */
+
+public interface EventSink {
+    /**
+     * Takes one event. Publishers call this from inside a turn, so it should return quickly.
+     *
+     * @param event The event.
+     */
+    void accept(GameEvent event);
+}
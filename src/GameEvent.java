@@ -0,0 +1,192 @@
+/**
+ * A GameEvent is something that happened in a game, as data instead of a message: a town publishes one for every
+ * outcome to its EventSink, and whoever subscribes decides what to do with it (show it, count it, log it).<p>
+ * An event never changes once it is published, so any number of threads can read the same event. The one field
+ * set after it is made is its sequence number, which the EventBus writes once, before the compare-and-set that
+ * puts the event in the ring; a subscriber only ever sees the event through that slot, so it always sees the number.
+ * toString() gives a one-line, machine-readable form, e.g. "12 GoldChanged bob BRAWL +7 17".
+ */
+
+public abstract class GameEvent {
+    /** What changed the hunter's gold. */
+    public enum Cause { BRAWL, DIG, SHOP }
+
+    // instance variables
+    private final String hunterName;
+    long sequence = -1; // set once, by the EventBus, when the event is published
+
+    GameEvent(String hunterName) {
+        this.hunterName = hunterName;
+    }
+
+    public String getHunterName() {
+        return hunterName;
+    }
+
+    /**
+     * @return The event's position on the EventBus it was published to, counting from 0, or -1 if it hasn't been published to one.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String toString() {
+        return sequence + " " + getClass().getSimpleName() + " " + hunterName + " " + details();
+    }
+
+    abstract String details();
+
+    /**
+     * The hunter's gold went up or down.
+     */
+    public static class GoldChanged extends GameEvent {
+        private final Cause cause;
+        private final int change;
+        private final int gold;
+
+        public GoldChanged(String hunterName, Cause cause, int change, int gold) {
+            super(hunterName);
+            this.cause = cause;
+            this.change = change;
+            this.gold = gold;
+        }
+
+        public Cause getCause() {
+            return cause;
+        }
+
+        public int getChange() {
+            return change;
+        }
+
+        /**
+         * @return The hunter's gold after the change.
+         */
+        public int getGold() {
+            return gold;
+        }
+
+        String details() {
+            return cause + " " + (change >= 0 ? "+" : "") + change + " " + gold;
+        }
+    }
+
+    /**
+     * The hunter lost the item they used to cross the terrain, and stayed in town.
+     */
+    public static class ItemLost extends GameEvent {
+        private final String item;
+        private final int terrainId;
+
+        public ItemLost(String hunterName, String item, int terrainId) {
+            super(hunterName);
+            this.item = item;
+            this.terrainId = terrainId;
+        }
+
+        public String getItem() {
+            return item;
+        }
+
+        public int getTerrainId() {
+            return terrainId;
+        }
+
+        String details() {
+            return item + " " + Town.TERRAIN_NAMES[terrainId];
+        }
+    }
+
+    /**
+     * The hunter searched a town and found its treasure.
+     */
+    public static class TreasureFound extends GameEvent {
+        private final String treasure;
+        private final boolean kept;
+
+        public TreasureFound(String hunterName, String treasure, boolean kept) {
+            super(hunterName);
+            this.treasure = treasure;
+            this.kept = kept;
+        }
+
+        public String getTreasure() {
+            return treasure;
+        }
+
+        /**
+         * @return false if the treasure was Dust or one the hunter already had.
+         */
+        public boolean isKept() {
+            return kept;
+        }
+
+        String details() {
+            return treasure + (kept ? " kept" : " discarded");
+        }
+    }
+
+    /**
+     * The hunter looked for trouble.
+     */
+    public static class BrawlResolved extends GameEvent {
+        /** How it ended. */
+        public enum Outcome { NO_TROUBLE, WON, LOST }
+
+        private final Outcome outcome;
+        private final int gold;
+        private final boolean toughTown;
+
+        public BrawlResolved(String hunterName, Outcome outcome, int gold, boolean toughTown) {
+            super(hunterName);
+            this.outcome = outcome;
+            this.gold = gold;
+            this.toughTown = toughTown;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * @return The gold won or lost, 0 if there was no fight.
+         */
+        public int getGold() {
+            return gold;
+        }
+
+        public boolean isToughTown() {
+            return toughTown;
+        }
+
+        String details() {
+            return outcome + " " + gold + (toughTown ? " tough" : " mild");
+        }
+    }
+
+    /**
+     * The hunter crossed the terrain around a town and moved on.
+     */
+    public static class TerrainCrossed extends GameEvent {
+        private final int terrainId;
+        private final String item;
+
+        public TerrainCrossed(String hunterName, int terrainId, String item) {
+            super(hunterName);
+            this.terrainId = terrainId;
+            this.item = item;
+        }
+
+        public int getTerrainId() {
+            return terrainId;
+        }
+
+        public String getItem() {
+            return item;
+        }
+
+        String details() {
+            return Town.TERRAIN_NAMES[terrainId] + " " + item;
+        }
+    }
+}
@@ -0,0 +1,761 @@
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The GameServer lets many players play at once over plain text connections (telnet or nc will do).<p>
+ * Every connection gets its own TreasureHunter game, reading from and writing to its own socket; nothing touches System.in or System.out.
+ * No thread waits for a player. One selector thread reads every connection without blocking (see ChannelInput), and each
+ * whole line is handed to its game with TreasureHunter.accept() on a worker, one line at a time per game. Workers are
+ * virtual threads when the JVM has them (Java 21 and later) and otherwise a few platform threads per core, so an idle
+ * session costs its buffers and no thread on any Java version.<p>
+ * The time from reading a command to sending the reply is recorded for every command, so p50/p99 latency can be reported.
+ * A client that sends a line longer than MAX_LINE_BYTES, or stops reading what it is sent, is disconnected.<p>
+ * With checkpoints on (see startCheckpoints()) every game is saved to a SnapshotFile as it goes, so a player who hangs
+ * up, or whose server is restarted, can carry on where they were by connecting again under the same name.
+ */
+
+public class GameServer {
+    // constants
+    private static final int INPUT_BUFFER_BYTES = 256;
+    private static final int MAX_LINE_BYTES = 256; // far longer than any answer the game asks for
+    private static final int OUTPUT_BUFFER_BYTES = 2048;
+    private static final int MAX_UNSENT_BYTES = 64 * 1024; // output a client hasn't read yet; past this it is disconnected
+    private static final int MAX_WAITING_LINES = 16; // lines read ahead of the game before the connection stops being read
+    private static final int WORKERS_PER_CORE = 2;
+    private static final int EVENT_BUFFER = 1 << 16;
+    private static final int SNAPSHOT_SLOTS = 1 << 16;
+    private static final int STOP_WAIT_SECONDS = 5; // how long stop() waits for games being played to save themselves
+
+    // instance variables
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private Thread selectorThread;
+    private ExecutorService workers;
+    private int port;
+    private Set<Session> openSessions = ConcurrentHashMap.newKeySet(); // closed by stop()
+    private Queue<Session> caughtUp = new ConcurrentLinkedQueue<>(); // sessions to read again once their game has caught up
+    private AtomicInteger activeSessions = new AtomicInteger();
+    private AtomicLong totalSessions = new AtomicLong();
+    private LatencyHistogram commandLatency = new LatencyHistogram();
+    private volatile EventSink events;
+    private volatile Leaderboard leaderboard;
+    private volatile Market market;
+    private volatile WorldMap sharedWorld;
+    private volatile SnapshotFile snapshots; // null unless checkpoints are on
+    private ScheduledExecutorService checkpointer;
+    private Map<String, Integer> savedGames = new HashMap<>(); // the slot of each game nobody is playing, by player name; guarded by itself
+    private ArrayDeque<Integer> freeSlots = new ArrayDeque<>(); // guarded by savedGames
+
+    /**
+     * Starts listening on the given port of the loopback address.
+     *
+     * @param port The port, or 0 to pick a free one.
+     */
+    public GameServer(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        serverChannel.configureBlocking(false);
+        this.port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        selector = Selector.open();
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        workers = newWorkerExecutor();
+        selectorThread = new Thread(this::selectLoop, "game-server-select");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * Has every session started from now on publish its GameEvents to the sink, e.g. an EventBus shared by all sessions.
+     */
+    public void setEventSink(EventSink events) {
+        this.events = events;
+    }
+
+    /**
+     * Has every session started from now on submit its finished run to the leaderboard, which all sessions share.
+     */
+    public void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Has every session started from now on play in market mode, all trading on the same market.
+     */
+    public void setMarket(Market market) {
+        this.market = market;
+    }
+
+    /**
+     * Has every session started from now on play in the shared world on the map, so players in the same mode meet in
+     * the same towns and race each other for their treasure and gold.
+     */
+    public void setSharedWorld(WorldMap world) {
+        sharedWorld = world;
+    }
+
+    /**
+     * Saves every session's game into the snapshot file every period, and lets players carry on the games saved in it:
+     * a player who gives the name of a saved game that nobody is playing is asked whether to carry it on. Games are
+     * also saved when their player hangs up and when the server stops, and a game's slot is emptied when the game ends.
+     * Each name keeps one saved game; the newer of two replaces the older.<p>
+     * Call it before players connect. Games saved in a mode this server doesn't have are left in the file untouched,
+     * and a game saved in the shared world can only be carried on if the server's map has the same size and seed.
+     *
+     * @param file The snapshot file, which may hold games saved by an earlier run of the server; it isn't closed by stop().
+     * @param periodMillis The time between checkpoints, in milliseconds.
+     */
+    public synchronized void startCheckpoints(SnapshotFile file, long periodMillis) {
+        snapshots = file;
+        synchronized (savedGames) {
+            for (int slot = 0; slot < file.getSlots(); slot++) {
+                GameSnapshot saved;
+                try {
+                    saved = file.load(slot);
+                } catch (IllegalStateException e) {
+                    System.err.println("Saved game in slot " + slot + " can't be read, so it is left as it is: " + e.getMessage());
+                    continue;
+                }
+                if (saved == null) {
+                    freeSlots.add(slot);
+                } else {
+                    keepSavedGame(saved.getPlayerName(), slot);
+                }
+            }
+        }
+        checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "game-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleAtFixedRate(this::checkpoint, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // accessors
+    public int getPort() {
+        return port;
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    public long getTotalSessions() {
+        return totalSessions.get();
+    }
+
+    public LatencyHistogram getCommandLatency() {
+        return commandLatency;
+    }
+
+    /**
+     * Stops accepting players and ends the games already running, closing their connections.
+     * With checkpoints on, every game still going is saved first, for its player to carry on after a restart.
+     */
+    public void stop() throws IOException {
+        serverChannel.close();
+        selector.wakeup();
+        synchronized (this) {
+            if (checkpointer != null) {
+                checkpointer.shutdown();
+            }
+        }
+        for (Session session : openSessions) {
+            session.close();
+        }
+        // a game being played as its session closes is saved by its worker, once the line it is on has been played
+        workers.shutdown();
+        try {
+            workers.awaitTermination(STOP_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        if (snapshots != null) {
+            snapshots.force();
+        }
+    }
+
+    /**
+     * Saves every game that has changed since its last checkpoint, then writes the file out to the disk.
+     */
+    private void checkpoint() {
+        try {
+            for (Session session : openSessions) {
+                session.checkpoint();
+            }
+            snapshots.force();
+        } catch (RuntimeException e) {
+            // the next checkpoint tries again
+            System.err.println("Checkpoint failed: " + e);
+        }
+    }
+
+    /**
+     * @return The slot of the game saved under the player's name, now the caller's, or -1 if there is none.
+     */
+    private int takeSavedGame(String playerName) {
+        synchronized (savedGames) {
+            Integer slot = savedGames.remove(playerName);
+            return slot == null ? -1 : slot;
+        }
+    }
+
+    /**
+     * Leaves a game in its slot for the player to carry on later. An older game saved under the same name is dropped.
+     */
+    private void keepSavedGame(String playerName, int slot) {
+        synchronized (savedGames) {
+            Integer older = savedGames.put(playerName, slot);
+            if (older != null && older != slot) {
+                freeSlot(older);
+            }
+        }
+    }
+
+    /**
+     * @return An empty slot, or -1 if the file is full.
+     */
+    private int newSlot() {
+        synchronized (savedGames) {
+            Integer slot = freeSlots.poll();
+            return slot == null ? -1 : slot;
+        }
+    }
+
+    private void freeSlot(int slot) {
+        synchronized (savedGames) {
+            snapshots.clear(slot);
+            freeSlots.add(slot);
+        }
+    }
+
+    /**
+     * Accepts new connections and reads and writes the open ones, whichever are ready, until stop() is called.
+     */
+    private void selectLoop() {
+        while (serverChannel.isOpen()) {
+            try {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        if (key.isAcceptable()) {
+                            acceptAll();
+                            continue;
+                        }
+                        Session session = (Session) key.attachment();
+                        if (key.isReadable()) {
+                            session.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            session.sendUnsent();
+                        }
+                    } catch (CancelledKeyException e) {
+                        // the session was closed by another thread in the meantime
+                    }
+                }
+                selector.selectedKeys().clear();
+                Session session;
+                while ((session = caughtUp.poll()) != null) {
+                    try {
+                        session.resumeReading();
+                    } catch (CancelledKeyException e) {
+                        // closed in the meantime
+                    }
+                }
+            } catch (IOException e) {
+                // an accept failed; the connections already open carry on
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // the server is stopping anyway
+        }
+    }
+
+    private void acceptAll() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Session session = new Session(channel);
+            openSessions.add(session);
+            activeSessions.incrementAndGet();
+            totalSessions.incrementAndGet();
+            session.key = channel.register(selector, SelectionKey.OP_READ, session);
+            workers.execute(session::playLines);
+        }
+    }
+
+    /**
+     * Uses virtual threads for the workers when the JVM supports them. They are looked up by reflection
+     * so the server still builds and runs on Java 17, where a few platform threads per core take turns instead.
+     */
+    private static ExecutorService newWorkerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(WORKERS_PER_CORE * Runtime.getRuntime().availableProcessors(), task -> {
+                Thread thread = new Thread(task, "game-worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * One connection: its game, the lines read for the game and not played yet, and the output the client hasn't taken yet.
+     * The selector thread reads lines into the session; a worker plays them, and only one worker at a time, so the game
+     * itself is only ever used by one thread at once. Reading a line starts the clock for a command, and the next flush
+     * (the game always flushes before waiting for input again) stops it.<p>
+     * The game is checkpointed while no worker is playing it, and saved by whichever thread has it when the player hangs up.
+     */
+    private class Session implements Display {
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ChannelInput input;
+        private ByteArrayOutputStream output = new ByteArrayOutputStream(OUTPUT_BUFFER_BYTES);
+        private TerminalDisplay display;
+        private TreasureHunter game;
+        private long commandStart;
+        private boolean askingName = true;   // the next line is the player's name
+        private String playerName;           // the name the player's saved game is kept under
+        private String nameLine;             // the name as typed, while the player is asked whether to carry on their saved game
+        private int slot = -1;               // where the game is saved in the snapshot file, -1 until it is first saved
+        // guarded by the session
+        private ArrayDeque<String> lines = new ArrayDeque<>();
+        private boolean inputEnded;
+        private boolean readingPaused;  // the connection isn't read until the game has caught up
+        private boolean playing = true; // a worker is playing the session's lines; the first one starts the game
+        private boolean started;
+        private ByteBuffer unsent;       // null when the client has taken everything
+        private boolean closeWhenSent;
+        private boolean closed;
+        private boolean changed;        // lines have been played since the last checkpoint
+        private boolean checkpointDue;  // a checkpoint came while a worker was playing; the worker saves the game when it is done
+
+        Session(SocketChannel channel) {
+            this.channel = channel;
+            input = new ChannelInput(channel, INPUT_BUFFER_BYTES, MAX_LINE_BYTES);
+            display = new TerminalDisplay(new PrintStream(output, false, StandardCharsets.UTF_8));
+            game = new TreasureHunter(new SplittableRandomSource(), null);
+            game.setEventSink(events);
+            game.setLeaderboard(leaderboard);
+            game.setMarket(market);
+            if (sharedWorld != null) {
+                game.setSharedWorld(sharedWorld);
+            }
+        }
+
+        /**
+         * Reads whatever lines have arrived, on the selector thread, and has a worker play them if none is already.
+         * Once MAX_WAITING_LINES are waiting the connection isn't read until the game has caught up, so a client
+         * sending faster than its game plays can't fill the server's memory.
+         */
+        void read() {
+            boolean startWorker = false;
+            try {
+                boolean full = false;
+                while (!full) {
+                    String line = input.poll();
+                    if (line == null && !input.isEnded()) {
+                        break;
+                    }
+                    synchronized (this) {
+                        if (line == null) {
+                            inputEnded = true;
+                            full = true;
+                        } else {
+                            lines.add(line);
+                            full = lines.size() >= MAX_WAITING_LINES;
+                        }
+                        readingPaused = full;
+                        if (!playing) {
+                            playing = true;
+                            startWorker = true;
+                        }
+                    }
+                }
+                if (full) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+            } catch (IOException e) {
+                // a broken connection, or a line over the limit (StreamInput.LineTooLongException), only ends that player's game
+                close();
+                return;
+            }
+            if (startWorker) {
+                workers.execute(this::playLines);
+            }
+        }
+
+        /**
+         * Reads the connection again, on the selector thread, after the game has played every line that was waiting.
+         */
+        void resumeReading() {
+            synchronized (this) {
+                if (closed || inputEnded) {
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            // lines may already be in the input's buffer, with nothing new for the selector to see
+            read();
+        }
+
+        /**
+         * Plays the lines read so far, on a worker, and gives the worker back once there are none left.
+         */
+        void playLines() {
+            try {
+                boolean waiting = true;
+                if (!started) {
+                    started = true;
+                    waiting = game.start(this);
+                }
+                while (waiting) {
+                    String line;
+                    synchronized (this) {
+                        if (closed) {
+                            keepForLater(true);
+                            game.abandon();
+                            return;
+                        }
+                        line = lines.poll();
+                        if (line == null && !inputEnded) {
+                            playing = false;
+                            changed = true;
+                            if (checkpointDue) {
+                                checkpoint();
+                            }
+                            if (readingPaused) {
+                                readingPaused = false;
+                                caughtUp.add(this);
+                                selector.wakeup();
+                            }
+                            return;
+                        }
+                        if (line == null && playerName != null) {
+                            // with checkpoints on, a player who hangs up keeps their game instead of exiting it
+                            keepForLater(true);
+                            game.abandon();
+                            close();
+                            return;
+                        }
+                    }
+                    commandStart = System.nanoTime();
+                    // otherwise, once the input has ended, the game is told so until it finishes
+                    waiting = play(line);
+                }
+                if (slot >= 0) {
+                    // the game is over, so there is nothing to carry on
+                    freeSlot(slot);
+                    slot = -1;
+                }
+                synchronized (this) {
+                    if (unsent == null) {
+                        close();
+                    } else {
+                        closeWhenSent = true;
+                    }
+                }
+            } catch (RuntimeException e) {
+                // a bug in the game: the session can't go on, but the server can
+                System.err.println("Session on " + channel.socket().getRemoteSocketAddress() + " ended by " + e);
+                e.printStackTrace();
+                keepForLater(false);
+                game.abandon();
+                close();
+            }
+        }
+
+        /**
+         * Plays a line. The player's name goes to the game as usual, unless a game saved under that name is waiting
+         * in the snapshot file: then the player is asked first whether to carry it on.
+         */
+        private boolean play(String line) {
+            if (askingName) {
+                askingName = false;
+                if (line != null && snapshots != null) {
+                    playerName = GameSnapshot.savedName(line.toLowerCase());
+                    slot = takeSavedGame(playerName);
+                    if (slot >= 0) {
+                        nameLine = line;
+                        display.print("\nWelcome back, " + playerName + "! Carry on your saved game? (y/n): ");
+                        flush();
+                        return true;
+                    }
+                }
+            } else if (nameLine != null) {
+                String name = nameLine;
+                nameLine = null;
+                if ("y".equalsIgnoreCase(line)) {
+                    try {
+                        GameSnapshot saved = snapshots.load(slot);
+                        if (saved != null) {
+                            return game.start(saved, this);
+                        }
+                    } catch (IllegalStateException e) {
+                        // e.g. saved on a different map
+                        display.println(e.getMessage());
+                    }
+                }
+                // a new game, which takes the old one's slot once it is saved
+                return game.accept(name);
+            }
+            return game.accept(line);
+        }
+
+        /**
+         * Saves the game if it has changed since the last checkpoint, on the checkpoint thread; a game a worker is
+         * playing is saved by the worker when it is done instead.
+         */
+        synchronized void checkpoint() {
+            if (closed || !changed) {
+                return;
+            }
+            if (playing) {
+                checkpointDue = true;
+                return;
+            }
+            checkpointDue = false;
+            changed = false;
+            save();
+        }
+
+        /**
+         * Keeps the game of a player who has gone in the snapshot file, for them to carry on when they come back: as it
+         * stands, or as the last checkpoint left it. Only called by the thread that has the game.
+         */
+        private void keepForLater(boolean asItStands) {
+            if (snapshots == null || playerName == null) {
+                return;
+            }
+            if (asItStands) {
+                save();
+            }
+            if (slot >= 0) {
+                keepSavedGame(playerName, slot);
+                slot = -1;
+            }
+        }
+
+        /**
+         * Saves the game into its slot, taking a free slot the first time. A game is only saved once it has a hunter
+         * in a town, and until it ends.
+         */
+        private void save() {
+            if (game.getCurrentTown() == null || game.isOver()) {
+                return;
+            }
+            if (slot < 0 && (slot = newSlot()) < 0) {
+                // the file is full; the game is saved once a slot is free
+                return;
+            }
+            try {
+                snapshots.save(slot, game);
+            } catch (IllegalStateException e) {
+                System.err.println("Game of " + playerName + " can't be saved: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Sends the text the game has shown, without waiting for the client. Whatever the connection can't take now
+         * is kept and sent by the selector thread once the client has read some.
+         */
+        private synchronized void send(ByteBuffer bytes) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (unsent == null) {
+                    channel.write(bytes);
+                    if (!bytes.hasRemaining()) {
+                        return;
+                    }
+                    unsent = ByteBuffer.allocate(Math.max(bytes.remaining(), OUTPUT_BUFFER_BYTES));
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    selector.wakeup();
+                } else if (unsent.remaining() < bytes.remaining()) {
+                    if (unsent.capacity() + bytes.remaining() > MAX_UNSENT_BYTES) {
+                        close();
+                        return;
+                    }
+                    ByteBuffer bigger = ByteBuffer.allocate(unsent.capacity() + bytes.remaining());
+                    unsent.flip();
+                    unsent = bigger.put(unsent);
+                }
+                unsent.put(bytes);
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Sends what the client couldn't take before, on the selector thread, once the connection can take more.
+         */
+        synchronized void sendUnsent() {
+            try {
+                unsent.flip();
+                channel.write(unsent);
+                if (unsent.hasRemaining()) {
+                    unsent.compact();
+                    return;
+                }
+                unsent = null;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (closeWhenSent) {
+                    close();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Closes the connection. The game is abandoned here, or by the worker playing it if there is one.
+         */
+        void close() {
+            boolean abandon;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                abandon = !playing;
+                playing = true; // no worker starts on the game again
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // closed anyway
+            }
+            openSessions.remove(this);
+            activeSessions.decrementAndGet();
+            if (abandon) {
+                keepForLater(true);
+                game.abandon();
+            }
+        }
+
+        public void addTextToWindow(String text) {
+            display.addTextToWindow(text);
+        }
+
+        public void addTextToWindow(String text, Color color) {
+            display.addTextToWindow(text, color);
+        }
+
+        public void clear() {
+            display.clear();
+        }
+
+        public void print(String message) {
+            display.print(message);
+        }
+
+        public void println(String message) {
+            display.println(message);
+        }
+
+        public void flush() {
+            display.flush();
+            if (output.size() > 0) {
+                send(ByteBuffer.wrap(output.toByteArray()));
+                output.reset();
+            }
+            if (commandStart != 0) {
+                commandLatency.record(System.nanoTime() - commandStart);
+                commandStart = 0;
+            }
+        }
+    }
+
+    /**
+     * Usage: GameServer [port] [secondsBetweenReports] [metricsFile] [eventsFile] [leaderboardFile] [marketTickMillis] [sharedWorldTowns]
+     * [snapshotFile] [secondsBetweenCheckpoints] [sharedWorldSeed]<p>
+     * A market tick above 0 puts every session in market mode, and a number of towns above 0 puts every session in one shared world of that size.
+     * A snapshot file turns checkpoints on, and games saved in it by the last run can be carried on; the shared world
+     * is made from the same seed every run, so games saved in it carry on on the same map.
+     * A file given as - is left out.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        int reportSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path metricsFile = fileArg(args, 2);
+        Path eventsFile = fileArg(args, 3);
+        Path leaderboardFile = fileArg(args, 4);
+        long marketTickMillis = args.length > 5 ? Long.parseLong(args[5]) : 0;
+        int sharedWorldTowns = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+        Path snapshotFile = fileArg(args, 7);
+        int checkpointSeconds = args.length > 8 ? Integer.parseInt(args[8]) : 10;
+        long sharedWorldSeed = args.length > 9 ? Long.parseLong(args[9]) : 0;
+
+        GameServer server = new GameServer(port);
+        Metrics.registerMBean();
+        if (metricsFile != null) {
+            Metrics.startDump(metricsFile, reportSeconds);
+        }
+        EventBus.Subscription eventLog = null;
+        if (eventsFile != null) {
+            EventBus bus = new EventBus(EVENT_BUFFER);
+            eventLog = bus.subscribe("log", new EventLog(eventsFile));
+            server.setEventSink(bus);
+        }
+        if (leaderboardFile != null) {
+            server.setLeaderboard(new Leaderboard(leaderboardFile));
+        }
+        Market market = null;
+        if (marketTickMillis > 0) {
+            market = new Market(Shop.DEFAULT_CATALOG);
+            market.start(marketTickMillis);
+            server.setMarket(market);
+        }
+        if (sharedWorldTowns > 0) {
+            server.setSharedWorld(new WorldMap(sharedWorldSeed, sharedWorldTowns));
+        }
+        if (snapshotFile != null) {
+            server.startCheckpoints(new SnapshotFile(snapshotFile, SNAPSHOT_SLOTS), checkpointSeconds * 1000L);
+        }
+        System.out.println("Treasure Hunter server listening on localhost:" + server.getPort());
+        while (true) {
+            Thread.sleep(reportSeconds * 1000L);
+            System.out.println("sessions: " + server.getActiveSessions() + " active, " + server.getTotalSessions()
+                    + " total; command latency: " + server.getCommandLatency()
+                    + (eventLog == null ? "" : "; events logged: " + eventLog.getDelivered() + ", dropped: " + eventLog.getDropped())
+                    + (market == null ? "" : "; " + market));
+        }
+    }
+
+    private static Path fileArg(String[] args, int i) {
+        return args.length > i && !args[i].equals("-") ? Path.of(args[i]) : null;
+    }
+}
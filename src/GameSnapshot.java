@@ -0,0 +1,302 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * A GameSnapshot is everything needed to carry on a game later: the hunter, the town they are in, the shop's markdown,
+ * the number of turns played and, in world mode, which map the game is on and where on it the town is.<p>
+ * It is stored as a fixed-size record of RECORD_SIZE bytes, so many games can be packed side by side in one file
+ * (see SnapshotFile) and any one of them read or written in place.<p>
+ * Items are saved by id. The game's own items always have the same ids, but any other item's id depends on the order
+ * names were first seen in (see Items), so each record keeps a checksum of the names of the ids it uses; a record
+ * whose ids now stand for different names is refused instead of being loaded with the wrong items:
+ * <pre>
+ *  0  byte   format version
+ *  1  byte   flags: 1 = slot in use, 2 = tough town, 4 = searched, 8 = dug, 16 = shared world
+ *  2  byte   length of the mode's code in bytes
+ *  3  byte   terrain id (see Town.TERRAIN_NAMES)
+ *  4  byte   item id of the town's treasure (see Items)
+ *  5  byte   length of the name in bytes
+ *  6  short  reserved
+ *  8  int    gold
+ * 12  int    item check: CRC-32 of the names of the ids in the kit, the treasures and the town's treasure
+ * 16  long   kit mask
+ * 24  long   treasure mask
+ * 32  byte[32] hunter name, UTF-8
+ * 64  double shop markdown
+ * 72  byte[32] the mode's code (see DifficultyProfile), UTF-8
+ * 104 int    number of towns on the world map, 0 outside world mode
+ * 108 int    town number on the world map
+ * 112 long   seed of the world map, 0 outside world mode
+ * 120 int    number of turns played
+ * 124 int    reserved
+ * </pre>
+ * Modes are saved by their whole code, so a profile loaded from a file resumes as itself; a snapshot whose mode
+ * isn't registered in the running game can't be read.
+ */
+
+public class GameSnapshot {
+    // constants
+    public static final int RECORD_SIZE = 128;
+    public static final byte VERSION = 5;
+    private static final byte HASH_VERSION = 4; // the format hash() works the record out in
+    private static final int MAX_NAME_BYTES = 32;
+    private static final int MAX_CODE_BYTES = 32;
+    private static final int USED = 1;
+    private static final int TOUGH = 2;
+    private static final int SEARCHED = 4;
+    private static final int DUG = 8;
+    private static final int SHARED_WORLD = 16;
+
+    // instance variables
+    private String hunterName;
+    private int gold;
+    private long kit;
+    private long treasures;
+    private DifficultyProfile difficulty;
+    private double markdown;
+    private int terrainId;
+    private boolean toughTown;
+    private String treasure;
+    private boolean searched;
+    private boolean digged;
+    private int turns;
+    private int worldTowns;
+    private long worldSeed;
+    private int townNumber;
+    private boolean sharedWorld;
+
+    private GameSnapshot() {
+    }
+
+    /**
+     * Takes a snapshot of a game in progress.
+     *
+     * @param game The game; it must have a hunter in a town.
+     * @return The snapshot.
+     */
+    public static GameSnapshot of(TreasureHunter game) {
+        GameSnapshot snapshot = new GameSnapshot();
+        Hunter hunter = game.getHunter();
+        Town town = game.getCurrentTown();
+        snapshot.hunterName = hunter.getHunterName();
+        snapshot.gold = hunter.getGold();
+        snapshot.kit = hunter.getKitMask();
+        snapshot.treasures = hunter.getTreasureMask();
+        snapshot.difficulty = game.getDifficulty();
+        snapshot.markdown = town.getShop().getMarkdown();
+        snapshot.terrainId = town.getTerrainId();
+        snapshot.toughTown = town.isToughTown();
+        snapshot.treasure = town.getTreasure();
+        snapshot.searched = town.hasBeenSearched();
+        snapshot.digged = town.hasBeenDug();
+        snapshot.turns = game.getTurns();
+        if (game.getWorld() != null) {
+            snapshot.worldTowns = game.getWorld().getTowns();
+            snapshot.worldSeed = game.getWorld().getSeed();
+            snapshot.townNumber = game.getTownNumber();
+            snapshot.sharedWorld = game.isSharedWorld();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes the snapshot as one record, without moving the buffer's position.
+     *
+     * @param buffer The buffer, e.g. a mapped file.
+     * @param offset Where the record starts.
+     * @throws IllegalStateException if the mode's code is too long to save.
+     */
+    public void writeTo(ByteBuffer buffer, int offset) {
+        byte[] name = truncatedName();
+        byte[] code = difficulty.getCode().getBytes(StandardCharsets.UTF_8);
+        if (code.length > MAX_CODE_BYTES) {
+            throw new IllegalStateException("Mode code " + difficulty.getCode() + " is too long to save");
+        }
+        int flags = USED | (toughTown ? TOUGH : 0) | (searched ? SEARCHED : 0) | (digged ? DUG : 0) | (sharedWorld ? SHARED_WORLD : 0);
+
+        buffer.put(offset, VERSION);
+        buffer.put(offset + 1, (byte) flags);
+        buffer.put(offset + 2, (byte) code.length);
+        buffer.put(offset + 3, (byte) terrainId);
+        buffer.put(offset + 4, (byte) Items.idOf(treasure));
+        buffer.put(offset + 5, (byte) name.length);
+        buffer.putShort(offset + 6, (short) 0);
+        buffer.putInt(offset + 8, gold);
+        buffer.putInt(offset + 12, itemCheck(kit | treasures | (1L << Items.idOf(treasure))));
+        buffer.putLong(offset + 16, kit);
+        buffer.putLong(offset + 24, treasures);
+        buffer.put(offset + 32, name);
+        for (int i = name.length; i < MAX_NAME_BYTES; i++) {
+            buffer.put(offset + 32 + i, (byte) 0);
+        }
+        buffer.putDouble(offset + 64, markdown);
+        buffer.put(offset + 72, code);
+        for (int i = 72 + code.length; i < 104; i++) {
+            buffer.put(offset + i, (byte) 0);
+        }
+        buffer.putInt(offset + 104, worldTowns);
+        buffer.putInt(offset + 108, townNumber);
+        buffer.putLong(offset + 112, worldSeed);
+        buffer.putInt(offset + 120, turns);
+        buffer.putInt(offset + 124, 0);
+    }
+
+    /**
+     * Reads one record, without moving the buffer's position.
+     *
+     * @return The snapshot, or null if the record is empty.
+     * @throws IllegalStateException if the record was written by a different format version, its mode isn't registered,
+     *                               or its item ids stand for different items in this game.
+     */
+    public static GameSnapshot readFrom(ByteBuffer buffer, int offset) {
+        int flags = buffer.get(offset + 1);
+        if ((flags & USED) == 0) {
+            return null;
+        }
+        if (buffer.get(offset) != VERSION) {
+            throw new IllegalStateException("Unsupported snapshot version " + buffer.get(offset));
+        }
+
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot.toughTown = (flags & TOUGH) != 0;
+        snapshot.searched = (flags & SEARCHED) != 0;
+        snapshot.digged = (flags & DUG) != 0;
+        snapshot.sharedWorld = (flags & SHARED_WORLD) != 0;
+        snapshot.worldTowns = buffer.getInt(offset + 104);
+        snapshot.townNumber = buffer.getInt(offset + 108);
+        snapshot.worldSeed = buffer.getLong(offset + 112);
+        snapshot.turns = buffer.getInt(offset + 120);
+        snapshot.terrainId = buffer.get(offset + 3);
+        int treasureId = buffer.get(offset + 4);
+        byte[] name = new byte[buffer.get(offset + 5)];
+        snapshot.gold = buffer.getInt(offset + 8);
+        snapshot.markdown = buffer.getDouble(offset + 64);
+        snapshot.kit = buffer.getLong(offset + 16);
+        snapshot.treasures = buffer.getLong(offset + 24);
+        buffer.get(offset + 32, name);
+        snapshot.hunterName = new String(name, StandardCharsets.UTF_8);
+        byte[] code = new byte[buffer.get(offset + 2)];
+        buffer.get(offset + 72, code);
+        String mode = new String(code, StandardCharsets.UTF_8);
+        snapshot.difficulty = DifficultyProfile.find(mode);
+        if (snapshot.difficulty == null) {
+            throw new IllegalStateException("Snapshot of " + snapshot.hunterName + " is in mode " + mode + ", which isn't loaded");
+        }
+        if (buffer.getInt(offset + 12) != itemCheck(snapshot.kit | snapshot.treasures | (1L << treasureId))) {
+            throw new IllegalStateException("Snapshot of " + snapshot.hunterName + " was saved with different item ids");
+        }
+        snapshot.treasure = Items.nameOf(treasureId);
+        return snapshot;
+    }
+
+    /**
+     * @return A checksum of the record; two games have the same hash when they are in the same state. The turn count and
+     *         the map's seed are left out (a replay checks those on its own), and the hash is worked out as format
+     *         HASH_VERSION did, so the hashes in replay logs recorded before still match.
+     */
+    public long hash() {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        writeTo(record, 0);
+        record.put(0, HASH_VERSION);
+        record.putLong(112, 0);
+        record.putInt(120, 0);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return crc.getValue();
+    }
+
+    /**
+     * Marks a record as empty.
+     */
+    public static void clear(ByteBuffer buffer, int offset) {
+        buffer.put(offset + 1, (byte) 0);
+    }
+
+    // accessors
+    public DifficultyProfile getDifficulty() {
+        return difficulty;
+    }
+
+    public double getMarkdown() {
+        return markdown;
+    }
+
+    /**
+     * @return The number of towns on the world map the game was played on, or 0 if it wasn't played in world mode.
+     */
+    public int getWorldTowns() {
+        return worldTowns;
+    }
+
+    /**
+     * @return The seed of the world map the game was played on, or 0 if it wasn't played in world mode.
+     */
+    public long getWorldSeed() {
+        return worldSeed;
+    }
+
+    public int getTownNumber() {
+        return townNumber;
+    }
+
+    public boolean isSharedWorld() {
+        return sharedWorld;
+    }
+
+    /**
+     * @return The number of menu choices made before the game was saved.
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * @return The name the player gave, as saved: without the mode's prefix (see DifficultyProfile.newHunter()), and
+     *         cut to fit the record.
+     */
+    public String getPlayerName() {
+        String prefix = difficulty.getNamePrefix();
+        return hunterName.startsWith(prefix) ? hunterName.substring(prefix.length()) : hunterName;
+    }
+
+    public Hunter toHunter() {
+        return new Hunter(hunterName, gold, kit, treasures);
+    }
+
+    public Town toTown(Shop shop, RandomSource random) {
+        return new Town(shop, difficulty, random, terrainId, toughTown, treasure, searched, digged);
+    }
+
+    /**
+     * Names longer than the record allows are cut at a character boundary.
+     */
+    private byte[] truncatedName() {
+        return savedName(hunterName).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param name A hunter's name.
+     * @return The name as a snapshot saves it: cut at a character boundary if it is longer than the record allows.
+     */
+    public static String savedName(String name) {
+        while (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+            name = name.substring(0, name.length() - 1);
+        }
+        return name;
+    }
+
+    /**
+     * @param ids A mask of item ids.
+     * @return A checksum of the names the ids stand for right now.
+     */
+    private static int itemCheck(long ids) {
+        CRC32 crc = new CRC32();
+        for (long bits = ids; bits != 0; bits &= bits - 1) {
+            String name = Items.nameOf(Long.numberOfTrailingZeros(bits));
+            crc.update((name == null ? "" : name).getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * A simple Strategy that searches every town, digs whenever it can and buys the item for the terrain as soon as it can afford it.
+ * When it can't afford the item, it looks for trouble to earn gold.
+ */
+
+public class GreedyStrategy implements Strategy {
+
+    public String nextMove(Hunter hunter, Town town) {
+        if (!town.hasBeenSearched()) {
+            return "h";
+        }
+        if (hunter.hasItemInKit("shovel") && !town.hasBeenDug()) {
+            return "d";
+        }
+        String neededItem = town.getTerrain().getNeededItem();
+        if (hunter.hasItemInKit(neededItem)) {
+            return "m";
+        }
+        if (hunter.getGold() >= town.getShop().getCostOfItem(neededItem)) {
+            return "b";
+        }
+        return "l";
+    }
+
+    public String itemToBuy(Hunter hunter, Town town) {
+        return town.getTerrain().getNeededItem();
+    }
+
+    public String itemToSell(Hunter hunter, Town town) {
+        return null;
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * HintSearch estimates, for each menu action, the chance of collecting every treasure if the player takes it now.<p>
+ * It works by Monte Carlo search from the live position: every rollout forks the hunter and town (see Hunter.fork()
+ * and Town.fork(), which copy a few fields and share everything else), takes one action, and plays on with the
+ * GreedyStrategy until the game is won or the horizon is reached. Which action gets the next rollout is picked with
+ * UCB1, so the promising ones are tried most. The calling thread searches, and so does one task for each pool
+ * thread free at the time, each with its own generator and counts; the counts are added up when the time budget runs out.
+ * A pool thread is only used while one of the pool's permits is held, so searches asked for at once (by many players
+ * on a server) share the pool's threads instead of queueing behind each other, and every search takes its budget and
+ * no longer. The default pool belongs to hints alone, so searching never holds up other work on the common pool.<p>
+ * The search uses its own rolls, never the game's, so asking for a hint changes nothing in the game being played,
+ * and its rollouts count nothing in Metrics.
+ */
+
+public class HintSearch {
+    // constants
+    /** The menu actions that are estimated; selling is left out, since the player picks what to sell. */
+    public static final String[] ACTIONS = {"b", "m", "h", "d", "l"};
+    private static final String[] ACTION_NAMES = {"buy", "move", "hunt", "dig", "look for trouble"};
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    // static variables
+    private static final ForkJoinPool SHARED_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    // one permit per pool thread, less one for the thread that asks: on one core every search runs on its caller alone
+    private static final Semaphore SHARED_PERMITS = new Semaphore(SHARED_POOL.getParallelism() - 1);
+
+    // instance variables
+    private Simulation simulation;
+    private ForkJoinPool pool;
+    private Semaphore permits;
+    private long budgetNanos;
+    private int horizon;
+
+    /**
+     * @param difficulty The mode of the game being searched.
+     * @param budgetMillis How long a search may take.
+     * @param horizon The number of turns each rollout plays before it counts as lost.
+     */
+    public HintSearch(DifficultyProfile difficulty, long budgetMillis, int horizon) {
+        this(difficulty, budgetMillis, horizon, SHARED_POOL, SHARED_PERMITS);
+    }
+
+    /**
+     * Same as the other constructor, with the rollouts run on the given pool, which only this search uses.
+     */
+    public HintSearch(DifficultyProfile difficulty, long budgetMillis, int horizon, ForkJoinPool pool) {
+        this(difficulty, budgetMillis, horizon, pool, new Semaphore(pool.getParallelism() - 1));
+    }
+
+    private HintSearch(DifficultyProfile difficulty, long budgetMillis, int horizon, ForkJoinPool pool, Semaphore permits) {
+        simulation = new Simulation(difficulty, new GreedyStrategy(), horizon);
+        simulation.setCounted(false);
+        this.pool = pool;
+        this.permits = permits;
+        budgetNanos = budgetMillis * 1_000_000L;
+        this.horizon = horizon;
+    }
+
+    /**
+     * Searches from a position until the time budget runs out. Neither the hunter nor the town is changed.
+     *
+     * @param hunter The hunter.
+     * @param town The town the hunter is in.
+     * @param seed The seed for the rollouts.
+     * @return The estimate for every action.
+     */
+    public Hint search(Hunter hunter, Town town, long seed) {
+        long deadline = System.nanoTime() + budgetNanos;
+        RandomSource random = new SplittableRandomSource(seed);
+        List<ForkJoinTask<long[]>> tasks = new ArrayList<>();
+        // only as many helpers as there are free pool threads, so no task waits in the pool's queue
+        while (permits.tryAcquire()) {
+            RandomSource taskRandom = random.split();
+            tasks.add(pool.submit(() -> {
+                try {
+                    return searchUntil(hunter, town, taskRandom, deadline);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        long[] wins = new long[ACTIONS.length];
+        long[] rollouts = new long[ACTIONS.length];
+        add(searchUntil(hunter, town, random.split(), deadline), wins, rollouts);
+        for (ForkJoinTask<long[]> task : tasks) {
+            add(task.join(), wins, rollouts);
+        }
+        return new Hint(wins, rollouts);
+    }
+
+    private static void add(long[] counts, long[] wins, long[] rollouts) {
+        for (int action = 0; action < ACTIONS.length; action++) {
+            wins[action] += counts[action];
+            rollouts[action] += counts[ACTIONS.length + action];
+        }
+    }
+
+    /**
+     * One task's share of the search. A task that starts after the deadline plays nothing.
+     *
+     * @return The wins for each action, followed by the rollouts for each action.
+     */
+    private long[] searchUntil(Hunter hunter, Town town, RandomSource random, long deadline) {
+        long[] counts = new long[2 * ACTIONS.length];
+        long total = 0;
+        while (System.nanoTime() < deadline) {
+            int action = pickAction(counts, total);
+            Hunter forkedHunter = hunter.fork();
+            Town forkedTown = town.fork(forkedHunter, random.split());
+            boolean won = !simulation.takeTurn(forkedHunter, forkedTown, ACTIONS[action])
+                    && simulation.playOut(forkedHunter, forkedTown, horizon - 1);
+            if (won) {
+                counts[action]++;
+            }
+            counts[ACTIONS.length + action]++;
+            total++;
+        }
+        return counts;
+    }
+
+    /**
+     * UCB1: every action once, then the one with the best win rate plus a bonus for having been tried less.
+     */
+    private static int pickAction(long[] counts, long total) {
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int action = 0; action < ACTIONS.length; action++) {
+            long tries = counts[ACTIONS.length + action];
+            if (tries == 0) {
+                return action;
+            }
+            double score = (double) counts[action] / tries + EXPLORATION * Math.sqrt(Math.log(total) / tries);
+            if (score > bestScore) {
+                bestScore = score;
+                best = action;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The result of a search: wins and rollouts for each of the ACTIONS.
+     */
+    public static class Hint {
+        private final long[] wins;
+        private final long[] rollouts;
+
+        Hint(long[] wins, long[] rollouts) {
+            this.wins = wins;
+            this.rollouts = rollouts;
+        }
+
+        /**
+         * @param action An index into ACTIONS.
+         * @return The estimated chance of winning after taking the action.
+         */
+        public double getWinProbability(int action) {
+            return rollouts[action] == 0 ? 0 : (double) wins[action] / rollouts[action];
+        }
+
+        /**
+         * @return The menu letter of the action with the best estimate.
+         */
+        public String getBestAction() {
+            int best = 0;
+            for (int action = 1; action < ACTIONS.length; action++) {
+                if (getWinProbability(action) > getWinProbability(best)) {
+                    best = action;
+                }
+            }
+            return ACTIONS[best];
+        }
+
+        /**
+         * @return The number of games played out in the search.
+         */
+        public long getRollouts() {
+            long total = 0;
+            for (long count : rollouts) {
+                total += count;
+            }
+            return total;
+        }
+
+        public String toString() {
+            StringBuilder str = new StringBuilder("Chance of finding every treasure (from " + getRollouts() + " games played out):");
+            for (int action = 0; action < ACTIONS.length; action++) {
+                str.append(String.format("%n  (%s) %-17s %5.1f%%", ACTIONS[action].toUpperCase(), ACTION_NAMES[action], 100 * getWinProbability(action)));
+            }
+            return str.toString();
+        }
+    }
+}
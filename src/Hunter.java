@@ -5,11 +5,28 @@
  */
 
 public class Hunter {
+    // constants
+    private static final int KIT_SIZE = 8;
+    private static final int TREASURE_SIZE = 3;
+
     //instance variables
     private String hunterName;
-    private String[] kit;
-    private String[] treasures;
+    private long kit;       // one bit per item id, see the Items class
+    private long treasures; // one bit per treasure id, see the Items class
     private int gold;
+    // the order the kit and treasures are listed in: one byte per slot holding the id plus one, 0 for an empty slot.
+    // Like the kit array this replaced, a new item goes in the first empty slot.
+    private long kitSlots;
+    private long treasureSlots;
+
+    // the printable text is kept between turns and only rebuilt after the part it shows has changed
+    private String inventoryText;
+    private String treasureText;
+    private String statusText;
+    private boolean kitChanged = true;
+    private boolean treasuresChanged = true;
+    private boolean statusChanged = true;
+    private StringBuilder renderBuffer = new StringBuilder();
 
     /**
      * The base constructor of a Hunter assigns the name to the hunter and an empty kit.
@@ -22,16 +39,59 @@ public class Hunter {
 
     public Hunter(String hunterName, int startingGold) {
         this.hunterName = hunterName;
-        kit = new String[8]; // only 6 possible items can be stored in kit
-        treasures = new String[3]; // only 5 possible items can be stored in kit
+        kit = 0; // only 8 items can be stored in kit
+        treasures = 0; // only 3 treasures can be stored
         gold = startingGold;
     }
 
+    /**
+     * Rebuilds a hunter from saved state (see GameSnapshot).
+     *
+     * @param kit The kit as a bit mask of item ids.
+     * @param treasures The treasures as a bit mask of treasure ids.
+     */
+    Hunter(String hunterName, int gold, long kit, long treasures) {
+        this.hunterName = hunterName;
+        this.gold = gold;
+        this.kit = kit;
+        this.treasures = treasures;
+        // the order isn't saved, so a rebuilt hunter lists its things in id order
+        kitSlots = slotsOf(kit);
+        treasureSlots = slotsOf(treasures);
+    }
+
+    /**
+     * Makes an independent copy of the hunter, e.g. to try out moves without changing the real one.<p>
+     * A hunter is only a name, some gold and two bit masks, so this copies a few fields whatever the hunter is carrying.
+     *
+     * @return The copy.
+     */
+    public Hunter fork() {
+        Hunter copy = new Hunter(hunterName, gold, kit, treasures);
+        copy.kitSlots = kitSlots;
+        copy.treasureSlots = treasureSlots;
+        return copy;
+    }
+
     //Accessors
     public String getHunterName() {
         return hunterName;
     }
 
+    /**
+     * @return The kit as a bit mask of item ids; cheap to copy, compare and hash.
+     */
+    public long getKitMask() {
+        return kit;
+    }
+
+    /**
+     * @return The treasures as a bit mask of treasure ids.
+     */
+    public long getTreasureMask() {
+        return treasures;
+    }
+
     /**
      * Updates the amount of gold the hunter has.
      *
@@ -42,6 +102,7 @@ public class Hunter {
         if (gold < 0) {
             gold = 0;
         }
+        statusChanged = true;
     }
 
     /**
@@ -57,6 +118,7 @@ public class Hunter {
         }
 
         gold -= costOfItem;
+        statusChanged = true;
         addItem(item);
         return true;
     }
@@ -76,49 +138,77 @@ public class Hunter {
         }
 
         gold += buyBackPrice;
+        statusChanged = true;
         removeItemFromKit(item);
         return true;
     }
 
     /**
-     * Removes an item from the kit by setting the index of the item to null.
+     * Removes an item from the kit.
      *
      * @param item The item to be removed.
      */
     public void removeItemFromKit(String item) {
-        int itmIdx = findItemInKit(item);
+        int id = Items.find(item);
 
-        // if item is found
-        if (itmIdx >= 0) {
-            kit[itmIdx] = null;
+        // if item is known
+        if (id >= 0) {
+            removeItemFromKit(id);
         }
     }
 
     /**
-     * Checks to make sure that the item is not already in the kit.
-     * If not, it assigns the item to an index in the kit with a null value ("empty" position).
+     * Removes an item from the kit by clearing its bit.
+     *
+     * @param itemId The id of the item to be removed.
+     */
+    public void removeItemFromKit(int itemId) {
+        long bit = 1L << itemId;
+        if ((kit & bit) != 0) {
+            kit &= ~bit;
+            kitSlots = emptySlot(kitSlots, itemId);
+            kitChanged = true;
+            statusChanged = true;
+        }
+    }
+
+    /**
+     * Checks to make sure that the item is not already in the kit and that the kit isn't full.
+     * If not, it adds the item to the kit.
      *
      * @param item The item to be added to the kit.
      * @return true if the item is not in the kit and has been added.
      */
     public boolean addItem(String item) {
-        if (!hasItemInKit(item)) {
-            int idx = emptyPositionInKit();
-            if (idx != -1){
-                kit[idx] = item;
-                return true;
-            }
+        return addItem(Items.idOf(item));
+    }
+
+    /**
+     * Same as addItem(String), using the item's id.
+     *
+     * @param itemId The id of the item to be added to the kit.
+     * @return true if the item is not in the kit and has been added.
+     */
+    public boolean addItem(int itemId) {
+        long bit = 1L << itemId;
+        if ((kit & bit) != 0 || Long.bitCount(kit) >= KIT_SIZE) {
             return false;
         }
-
-        return false;
+        kit |= bit;
+        kitSlots = fillSlot(kitSlots, itemId);
+        kitChanged = true;
+        statusChanged = true;
+        return true;
     }
 
 
     public boolean addTreasure(String treasure) {
-        if (!hasItemInTreasure(treasure) && !(treasure.equals("Dust"))) {
-            int idx = emptyPositionInTreasure();
-            this.treasures[idx] = treasure;
+        if (!hasItemInTreasure(treasure) && !(treasure.equals("Dust")) && Long.bitCount(treasures) < TREASURE_SIZE) {
+            int id = Items.idOf(treasure);
+            treasures |= 1L << id;
+            treasureSlots = fillSlot(treasureSlots, id);
+            treasuresChanged = true;
+            statusChanged = true;
             return true;
         }
 
@@ -126,38 +216,33 @@ public class Hunter {
     }
 
     /**
-     * Checks if the kit Array has the specified item.
+     * Checks if the kit has the specified item.
      *
      * @param item The search item
      * @return true if the item is found.
      */
     public boolean hasItemInKit(String item) {
-        for (String tmpItem : kit) {
-            if (item.equals(tmpItem)) {
-                // early return
-                return true;
-            }
-        }
-        return false;
+        int id = Items.find(item);
+        return id >= 0 && hasItemInKit(id);
     }
 
-    public boolean hasItemInTreasure(String item) {
-        for (String tmpItem : treasures) {
-            if (item.equals(tmpItem)) {
-                // early return
-                return true;
-            }
-        }
+    /**
+     * Same as hasItemInKit(String), using the item's id.
+     *
+     * @param itemId The id of the search item.
+     * @return true if the item is found.
+     */
+    public boolean hasItemInKit(int itemId) {
+        return (kit & (1L << itemId)) != 0;
+    }
 
-        return false;
+    public boolean hasItemInTreasure(String item) {
+        int id = Items.find(item);
+        return id >= 0 && (treasures & (1L << id)) != 0;
     }
 
     public boolean hasAllTreasure(){
-        if (hasItemInTreasure("Crown") && hasItemInTreasure("Trophy") && hasItemInTreasure("Gem")){
-            return true;
-        } else {
-            return false;
-        }
+        return (treasures & Items.ALL_TREASURES) == Items.ALL_TREASURES;
     }
 
      /**
@@ -167,29 +252,19 @@ public class Hunter {
      * @return The printable String representation of the inventory.
      */
     public String getInventory() {
-        String printableKit = "";
-        String space = " ";
-
-        for (String item : kit) {
-            if (item != null) {
-                printableKit += item + space;
-            }
+        if (kitChanged) {
+            inventoryText = printable(kitSlots);
+            kitChanged = false;
         }
-
-        return printableKit;
+        return inventoryText;
     }
 
     public String getTreasures() {
-        String printableTreasure = "";
-        String space = " ";
-
-        for (String item : treasures) {
-            if (item != null) {
-                printableTreasure += item + space;
-            }
+        if (treasuresChanged) {
+            treasureText = printable(treasureSlots);
+            treasuresChanged = false;
         }
-
-        return printableTreasure;
+        return treasureText;
     }
 
     public int getGold() {
@@ -200,79 +275,101 @@ public class Hunter {
      * @return A string representation of the hunter.
      */
     public String toString() {
-        String str = hunterName + " has " + gold + " gold" ;
-        if (!kitIsEmpty()) {
-            str += " and " + getInventory() + textColor.RESET;
-        }
-        if (!treasuresIsEmpty()) {
-            str += "\nand has found the treasures: " + getTreasures() ;
+        if (statusChanged) {
+            // these share the render buffer, so they are brought up to date before it is reused
+            String inventory = getInventory();
+            String treasureList = getTreasures();
+
+            StringBuilder str = renderBuffer;
+            str.setLength(0);
+            str.append(hunterName).append(" has ").append(gold).append(" gold");
+            if (!kitIsEmpty()) {
+                str.append(" and ").append(inventory).append(textColor.RESET);
+            }
+            if (!treasuresIsEmpty()) {
+                str.append("\nand has found the treasures: ").append(treasureList);
+            }
+            statusText = str.toString();
+            statusChanged = false;
         }
-        return str;
+        return statusText;
     }
 
     /**
-     * Searches kit Array for the index of the specified value.
+     * Appends the same text as toString() to the given builder.
+     * Nothing is allocated unless the hunter has changed since the last time it was rendered.
      *
-     * @param item String to look for.
-     * @return The index of the item, or -1 if not found.
+     * @param out Where the text is appended.
      */
-    private int findItemInKit(String item) {
-        for (int i = 0; i < kit.length; i++) {
-            String tmpItem = kit[i];
+    public void appendTo(StringBuilder out) {
+        out.append(toString());
+    }
 
-            if (item.equals(tmpItem)) {
-                return i;
+    /**
+     * Lists the names of the ids in the slots, in slot order, with a space after each one.
+     *
+     * @param slots The kit's or the treasures' slots.
+     * @return The printable list.
+     */
+    private String printable(long slots) {
+        StringBuilder printable = renderBuffer;
+        printable.setLength(0);
+
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            int slot = (int) (slots >>> shift) & 0xFF;
+            if (slot != 0) {
+                printable.append(Items.nameOf(slot - 1)).append(' ');
             }
         }
 
-        return -1;
+        return printable.toString();
     }
 
     /**
-     * Check if the kit is empty - meaning all elements are null.
-     *
-     * @return true if kit is completely empty.
+     * Puts an id in the first empty slot.
      */
-    private boolean kitIsEmpty() {
-        for (String string : kit) {
-            if (string != null) {
-                return false;
+    private static long fillSlot(long slots, int id) {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            if (((slots >>> shift) & 0xFF) == 0) {
+                return slots | ((long) (id + 1) << shift);
             }
         }
-        return true;
+        return slots;
     }
 
-    private boolean treasuresIsEmpty() {
-        for (String string : treasures) {
-            if (string != null) {
-                return false;
+    /**
+     * Empties the slot holding an id.
+     */
+    private static long emptySlot(long slots, int id) {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            if (((slots >>> shift) & 0xFF) == id + 1) {
+                return slots & ~(0xFFL << shift);
             }
         }
-        return true;
+        return slots;
     }
 
     /**
-     * Finds the first index where there is a null value.
-     *
-     * @return index of empty index, or -1 if not found.
+     * Fills slots with the ids in a mask, lowest id first.
      */
-    private int emptyPositionInKit() {
-        for (int i = 0; i < kit.length; i++) {
-            if (kit[i] == null) {
-                return i;
-            }
+    private static long slotsOf(long mask) {
+        long slots = 0;
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            slots = fillSlot(slots, Long.numberOfTrailingZeros(bits));
         }
-
-        return -1;
+        return slots;
     }
 
-    private int emptyPositionInTreasure() {
-        for (int i = 0; i < treasures.length; i++) {
-            if (treasures[i] == null) {
-                return i;
-            }
-        }
+    /**
+     * Check if the kit is empty.
+     *
+     * @return true if kit is completely empty.
+     */
+    private boolean kitIsEmpty() {
+        return kit == 0;
+    }
 
-        return -1;
+    private boolean treasuresIsEmpty() {
+        return treasures == 0;
     }
-}
\ No newline at end of file
+}
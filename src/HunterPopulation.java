@@ -0,0 +1,335 @@
+import java.util.SplittableRandom;
+
+/**
+ * A HunterPopulation plays many games side by side, one per lane, keeping every hunter and town as columns of
+ * primitive arrays instead of one Hunter and one Town object per game.<p>
+ * Each action (looking for trouble, digging, hunting, buying, leaving town) is applied to every lane in one pass
+ * over the arrays, so the loop walks memory in order instead of chasing references from object to object.
+ * The rules are the same as in Town, Hunter and Shop, roll for roll: each lane has its own generator that steps
+ * exactly like a SplittableRandom made from the lane's seed, so lane i plays out the same game as a Town given
+ * new SplittableRandomSource(seed + i). main() checks this against the object-based classes and measures throughput.<p>
+ * The JDK's Vector API is still an incubator module, so the passes are plain loops; the branch-free parts
+ * (the random generator's mixing, clamping gold at zero) are left for the JIT to vectorize where it can.
+ */
+
+public class HunterPopulation {
+    // constants
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L; // the gamma of every seeded SplittableRandom
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+    private static final byte SEARCHED = 1;
+    private static final byte DUG = 2;
+    private static final byte TOUGH = 4;
+    private static final long SHOVEL_BIT = 1L << Items.SHOVEL;
+    private static final int KIT_SIZE = 8;
+    private static final int TREASURE_SIZE = 3;
+    private static final int TREASURE_COUNT = TreasureHunter.TREASURES.length;
+    private static final double[] TERRAIN_ODDS = {1.0 / 6, 1.0 / 3, 1.0 / 2, 2.0 / 3, 5.0 / 6}; // Town's cut-offs, compared the same way
+    private static final int[] NEEDED_ITEM = new int[Town.TERRAIN_ITEMS.length]; // item ids, indexed by terrain id
+    private static final long[] NEEDED_ITEM_BIT = new long[Town.TERRAIN_ITEMS.length];
+
+    static {
+        for (int id = 0; id < NEEDED_ITEM.length; id++) {
+            NEEDED_ITEM[id] = Items.idOf(Town.TERRAIN_ITEMS[id].toLowerCase());
+            NEEDED_ITEM_BIT[id] = 1L << NEEDED_ITEM[id];
+        }
+    }
+
+    // instance variables
+    private int size;
+    private DifficultyProfile difficulty;
+    private Shop shop;           // whose buying rules every lane follows
+    private int[] itemCost;      // indexed by terrain id: the shop's price for the item that crosses it
+    private long[] state;        // each lane's generator
+    private int[] gold;
+    private long[] kit;          // bit masks of item ids, as in Hunter
+    private long[] treasures;
+    private byte[] terrain;      // terrain ids, as in Town
+    private byte[] treasure;     // the town's treasure, as an index into TreasureHunter.TREASURES
+    private byte[] flags;        // SEARCHED, DUG and TOUGH
+
+    /**
+     * Starts a game in every lane: each hunter is made as the difficulty's newHunter() would,
+     * and arrives in a town rolled the way a new Town is.
+     *
+     * @param difficulty The difficulty mode for every lane.
+     * @param size The number of lanes.
+     * @param seed The seed of lane 0; lane i uses seed + i.
+     */
+    public HunterPopulation(DifficultyProfile difficulty, int size, long seed) {
+        this.size = size;
+        this.difficulty = difficulty;
+        shop = Shop.shared(difficulty);
+        itemCost = new int[NEEDED_ITEM_BIT.length];
+        for (int id = 0; id < itemCost.length; id++) {
+            itemCost[id] = shop.getCostOfItem(Town.TERRAIN_ITEMS[id].toLowerCase());
+        }
+
+        state = new long[size];
+        gold = new int[size];
+        kit = new long[size];
+        treasures = new long[size];
+        terrain = new byte[size];
+        treasure = new byte[size];
+        flags = new byte[size];
+        for (int lane = 0; lane < size; lane++) {
+            state[lane] = seed + lane;
+            gold[lane] = difficulty.getStartingGold();
+            kit[lane] = difficulty.getStartingKit();
+            newTown(lane);
+        }
+    }
+
+    /**
+     * The lane's next roll, the same as SplittableRandom.nextDouble().
+     */
+    private double nextDouble(int lane) {
+        long z = state[lane] += GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Rolls a new town for the lane, in the same order as Town.reset().
+     */
+    private void newTown(int lane) {
+        double roll = nextDouble(lane);
+        int id = 0;
+        while (id < TERRAIN_ODDS.length && roll >= TERRAIN_ODDS[id]) {
+            id++;
+        }
+        terrain[lane] = (byte) id;
+        treasure[lane] = (byte) (nextDouble(lane) * TREASURE_COUNT);
+        flags[lane] = nextDouble(lane) < difficulty.getToughness() ? TOUGH : 0;
+    }
+
+    /**
+     * Town.lookForTrouble() in every lane.
+     */
+    public void lookForTrouble() {
+        for (int lane = 0; lane < size; lane++) {
+            double noTroubleChance = (flags[lane] & TOUGH) != 0 ? 0.66 : 0.33;
+            if (nextDouble(lane) <= noTroubleChance) {
+                int goldDiff = (int) (nextDouble(lane) * 10) + 1;
+                int change = nextDouble(lane) > noTroubleChance ? goldDiff : -goldDiff;
+                gold[lane] = Math.max(gold[lane] + change, 0);
+            }
+        }
+    }
+
+    /**
+     * Town.digForGold() in every lane; lanes without a shovel, or that have already dug, roll nothing.
+     */
+    public void digForGold() {
+        for (int lane = 0; lane < size; lane++) {
+            if ((flags[lane] & DUG) == 0 && (kit[lane] & SHOVEL_BIT) != 0) {
+                if (nextDouble(lane) < 0.5) {
+                    gold[lane] += (int) (nextDouble(lane) * 20) + 1;
+                }
+                flags[lane] |= DUG;
+            }
+        }
+    }
+
+    /**
+     * Town.huntForTreasure() in every lane.
+     */
+    public void huntForTreasure() {
+        for (int lane = 0; lane < size; lane++) {
+            if ((flags[lane] & SEARCHED) == 0) {
+                flags[lane] |= SEARCHED;
+                int id = Items.CROWN + treasure[lane];
+                long bit = 1L << id;
+                if (id != Items.DUST && (treasures[lane] & bit) == 0 && Long.bitCount(treasures[lane]) < TREASURE_SIZE) {
+                    treasures[lane] |= bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Buying the item that crosses the lane's terrain, as Simulation does for the GreedyStrategy,
+     * by the shop's rules (see Shop.charge()). Trades made here aren't counted in the shop metrics.
+     */
+    public void buyNeededItem() {
+        for (int lane = 0; lane < size; lane++) {
+            long bit = NEEDED_ITEM_BIT[terrain[lane]];
+            int paid = shop.charge(kit[lane], gold[lane], NEEDED_ITEM[terrain[lane]], itemCost[terrain[lane]]);
+            if (paid >= 0) {
+                gold[lane] -= paid;
+                if ((kit[lane] & bit) == 0 && Long.bitCount(kit[lane]) < KIT_SIZE) {
+                    kit[lane] |= bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Town.leaveTown() in every lane, followed, in the lanes that got across, by arriving in the next town
+     * (Town.reset()), the same as a move in Simulation.
+     *
+     * @return The number of lanes that moved on.
+     */
+    public int leaveTown() {
+        boolean itemLoss = difficulty.hasItemLoss();
+        int moved = 0;
+        for (int lane = 0; lane < size; lane++) {
+            long bit = NEEDED_ITEM_BIT[terrain[lane]];
+            if ((kit[lane] & bit) != 0) {
+                if (nextDouble(lane) < 0.5 && itemLoss) {
+                    kit[lane] &= ~bit;
+                } else {
+                    newTown(lane);
+                    moved++;
+                }
+            }
+        }
+        return moved;
+    }
+
+    // accessors, by lane
+    public int size() {
+        return size;
+    }
+
+    public int getGold(int lane) {
+        return gold[lane];
+    }
+
+    public long getKitMask(int lane) {
+        return kit[lane];
+    }
+
+    public long getTreasureMask(int lane) {
+        return treasures[lane];
+    }
+
+    public int getTerrainId(int lane) {
+        return terrain[lane];
+    }
+
+    public boolean hasBeenSearched(int lane) {
+        return (flags[lane] & SEARCHED) != 0;
+    }
+
+    public boolean hasBeenDug(int lane) {
+        return (flags[lane] & DUG) != 0;
+    }
+
+    public boolean isToughTown(int lane) {
+        return (flags[lane] & TOUGH) != 0;
+    }
+
+    /**
+     * @return The number of lanes whose hunter has every treasure.
+     */
+    public int countWinners() {
+        int winners = 0;
+        for (int lane = 0; lane < size; lane++) {
+            if (treasures[lane] == Items.ALL_TREASURES) {
+                winners++;
+            }
+        }
+        return winners;
+    }
+
+    /**
+     * Plays the same random sequence of actions in a population and in one Town and Hunter per lane,
+     * and compares every lane after every action.
+     *
+     * @param difficulty The difficulty mode.
+     * @param lanes The number of lanes.
+     * @param actions The number of actions to apply.
+     * @param seed The seed for the lanes and for picking the actions.
+     * @return null if every lane matched throughout, otherwise a description of the first difference.
+     */
+    public static String compareWithTowns(DifficultyProfile difficulty, int lanes, int actions, long seed) {
+        HunterPopulation population = new HunterPopulation(difficulty, lanes, seed);
+        Shop shop = Shop.shared(difficulty);
+        Hunter[] hunters = new Hunter[lanes];
+        Town[] towns = new Town[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            hunters[lane] = difficulty.newHunter("lane" + lane);
+            towns[lane] = new Town(shop, difficulty, TreasureHunter.TREASURES, new SplittableRandomSource(seed + lane));
+            towns[lane].hunterArrives(hunters[lane]);
+        }
+
+        SplittableRandom picker = new SplittableRandom(seed);
+        String[] names = {"lookForTrouble", "digForGold", "huntForTreasure", "buyNeededItem", "leaveTown"};
+        for (int step = 0; step < actions; step++) {
+            int action = picker.nextInt(names.length);
+            switch (action) {
+                case 0: population.lookForTrouble(); break;
+                case 1: population.digForGold(); break;
+                case 2: population.huntForTreasure(); break;
+                case 3: population.buyNeededItem(); break;
+                default: population.leaveTown(); break;
+            }
+            for (int lane = 0; lane < lanes; lane++) {
+                Hunter hunter = hunters[lane];
+                Town town = towns[lane];
+                switch (action) {
+                    case 0: town.lookForTrouble(); break;
+                    case 1: town.digForGold(); break;
+                    case 2: town.huntForTreasure(); break;
+                    case 3: shop.buy(hunter, town.getTerrain().getNeededItem()); break;
+                    default:
+                        if (town.leaveTown()) {
+                            town.reset();
+                            town.hunterArrives(hunter);
+                        }
+                        break;
+                }
+                if (hunter.getGold() != population.getGold(lane) || hunter.getKitMask() != population.getKitMask(lane)
+                        || hunter.getTreasureMask() != population.getTreasureMask(lane)
+                        || town.getTerrainId() != population.getTerrainId(lane) || town.isToughTown() != population.isToughTown(lane)
+                        || town.hasBeenSearched() != population.hasBeenSearched(lane) || town.hasBeenDug() != population.hasBeenDug(lane)) {
+                    return "lane " + lane + " differs after action " + step + " (" + names[action] + "): town has gold "
+                            + hunter.getGold() + ", kit " + hunter.getKitMask() + ", terrain " + town.getTerrainId()
+                            + "; population has gold " + population.getGold(lane) + ", kit " + population.getKitMask(lane)
+                            + ", terrain " + population.getTerrainId(lane);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks every difficulty mode against the object-based classes, then measures hunter-turns per second
+     * for a greedy turn applied to the whole population.<p>
+     * Usage: HunterPopulation [lanes] [seconds] [mode]
+     */
+    public static void main(String[] args) {
+        int lanes = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        DifficultyProfile mode = args.length > 2 ? DifficultyProfile.forCode(args[2]) : DifficultyProfile.NORMAL;
+
+        DifficultyProfile[] modes = {DifficultyProfile.HARD, DifficultyProfile.NORMAL, DifficultyProfile.EASY, DifficultyProfile.SAMURAI, DifficultyProfile.TEST};
+        for (DifficultyProfile difficulty : modes) {
+            String difference = compareWithTowns(difficulty, 1000, 500, 7);
+            System.out.println(difficulty.getName() + ": " + (difference == null ? "matches Town" : difference));
+            if (difference != null) {
+                System.exit(1);
+            }
+        }
+
+        HunterPopulation population = new HunterPopulation(mode, lanes, 1);
+        long turns = 0;
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long now = start;
+        while (now < end) {
+            for (int i = 0; i < 100; i++) {
+                population.huntForTreasure();
+                population.digForGold();
+                population.buyNeededItem();
+                population.leaveTown();
+                population.lookForTrouble();
+            }
+            turns += 500L * lanes;
+            now = System.nanoTime();
+        }
+        System.out.printf("%s, %d lanes: %.1f million hunter-turns/sec%n", mode.getName(), lanes, turns * 1000.0 / (now - start));
+    }
+}
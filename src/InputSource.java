@@ -0,0 +1,16 @@
+/**
+ * An InputSource supplies the lines a player types: names, menu choices and answers to the shop.<p>
+ * The whole game reads from one InputSource, so lines never go missing between two readers of the same stream.<p>
+ * nextLine() waits for the line, so a game played from an InputSource (TreasureHunter.play()) holds its thread while
+ * the player thinks. A game can instead be handed each line as it arrives, with TreasureHunter.accept(), from a source
+ * that never waits, such as ChannelInput; that is how GameServer plays thousands of games on a few threads.
+ */
+
+public interface InputSource {
+    /**
+     * Returns the next line, waiting for one if the source is interactive.
+     *
+     * @return The next line, or null if there is no more input.
+     */
+    String nextLine();
+}
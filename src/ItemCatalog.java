@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ItemCatalog lists what shops sell and what it costs, keyed by item id (see the Items class).<p>
+ * A catalog never changes once built, so one catalog can be shared by every Shop. The shop listing is rendered
+ * once when the catalog is built instead of on every visit.
+ */
+
+public class ItemCatalog {
+    // instance variables
+    private List<Entry> entries;
+    private int[] costs;
+    private String inventoryText;
+    private String samuraiInventoryText;
+
+    /**
+     * @param entries The items for sale, in the order the shop lists them.
+     */
+    public ItemCatalog(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        costs = new int[Items.MAX_ITEMS];
+
+        StringBuilder normal = new StringBuilder();
+        StringBuilder samurai = new StringBuilder();
+        for (Entry entry : this.entries) {
+            costs[entry.getId()] = entry.getCost();
+            String color = entry.isSamuraiOnly() ? textColor.RED_BOLD_BRIGHT : textColor.PURPLE_BRIGHT;
+            String line = color + entry.getDisplayName() + ": " + entry.getCost() + textColor.YELLOW_BOLD_BRIGHT + " gold\n" + textColor.RESET;
+            if (!entry.isSamuraiOnly()) {
+                normal.append(line);
+            }
+            samurai.append(line);
+        }
+        inventoryText = normal.toString();
+        samuraiInventoryText = samurai.toString();
+    }
+
+    /**
+     * Reads a catalog from a text file with one item per line: the name, the cost and optionally the word "samurai"
+     * for items only listed in samurai mode. Blank lines and lines starting with # are skipped.
+     *
+     * @param file The catalog file.
+     * @return The catalog.
+     */
+    public static ItemCatalog load(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length < 2) {
+                throw new IOException("Bad catalog line: " + line);
+            }
+            boolean samuraiOnly = parts.length > 2 && parts[2].equalsIgnoreCase("samurai");
+            entries.add(new Entry(parts[0].toLowerCase(), Integer.parseInt(parts[1]), samuraiOnly));
+        }
+        return new ItemCatalog(entries);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param itemId The id of the item.
+     * @return The item's cost, or 0 if the catalog doesn't have it.
+     */
+    public int getCost(int itemId) {
+        return costs[itemId];
+    }
+
+    /**
+     * @param samurai true to include the items only listed in samurai mode.
+     * @return The shop listing.
+     */
+    public String getInventoryText(boolean samurai) {
+        return samurai ? samuraiInventoryText : inventoryText;
+    }
+
+    /**
+     * One item for sale.
+     */
+    public static class Entry {
+        private int id;
+        private String name;
+        private String displayName;
+        private int cost;
+        private boolean samuraiOnly;
+
+        /**
+         * @param name The item's name, in lower case.
+         * @param cost The item's cost.
+         * @param samuraiOnly true if the item is only listed in samurai mode.
+         */
+        public Entry(String name, int cost, boolean samuraiOnly) {
+            this.id = Items.idOf(name);
+            this.name = name;
+            this.displayName = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            this.cost = cost;
+            this.samuraiOnly = samuraiOnly;
+        }
+
+        // accessors
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public int getCost() {
+            return cost;
+        }
+
+        public boolean isSamuraiOnly() {
+            return samuraiOnly;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Items class gives every item and treasure name a small number (its id), so a Hunter can keep its kit and treasures
+ * as bits in a long instead of as arrays of Strings.<p>
+ * The game's own items have fixed ids; any other name gets the next free id the first time it is seen, up to MAX_ITEMS.
+ * Ids end up in masks, snapshots and price tables, so running out of them is an error rather than something to skip.
+ */
+
+public class Items {
+    // constants
+    public static final int MAX_ITEMS = 64; // one bit per item in a long
+
+    public static final int WATER = 0;
+    public static final int ROPE = 1;
+    public static final int MACHETE = 2;
+    public static final int HORSE = 3;
+    public static final int BOAT = 4;
+    public static final int BOOTS = 5;
+    public static final int SHOVEL = 6;
+    public static final int SWORD = 7;
+    public static final int CROWN = 8;
+    public static final int TROPHY = 9;
+    public static final int GEM = 10;
+    public static final int DUST = 11;
+
+    /** The treasures a hunter needs to win. */
+    public static final long ALL_TREASURES = (1L << CROWN) | (1L << TROPHY) | (1L << GEM);
+
+    // static variables
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final String[] NAMES = new String[MAX_ITEMS];
+    private static int nextId;
+
+    static {
+        String[] names = {"water", "rope", "machete", "horse", "boat", "boots", "shovel", "sword", "Crown", "Trophy", "Gem", "Dust"};
+        for (String name : names) {
+            idOf(name);
+        }
+    }
+
+    /**
+     * Looks up the id of a name without adding it.
+     *
+     * @param name The item or treasure name.
+     * @return The id, or -1 if the name has never been seen.
+     */
+    public static int find(String name) {
+        Integer id = IDS.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Looks up the id of a name, giving it a new id if it has never been seen.
+     *
+     * @param name The item or treasure name.
+     * @return The id.
+     * @throws IllegalStateException if the name is new and all MAX_ITEMS ids are taken.
+     */
+    public static int idOf(String name) {
+        Integer id = IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (NAMES) {
+            id = IDS.get(name);
+            if (id != null) {
+                return id;
+            }
+            if (nextId == MAX_ITEMS) {
+                throw new IllegalStateException("All " + MAX_ITEMS + " item ids are taken, so there is none left for " + name);
+            }
+            NAMES[nextId] = name;
+            IDS.put(name, nextId);
+            return nextId++;
+        }
+    }
+
+    /**
+     * @param id An id handed out by idOf().
+     * @return The name for the id.
+     */
+    public static String nameOf(int id) {
+        return NAMES[id];
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of durations in nanoseconds, used to report percentiles like p50 and p99.<p>
+ * Like an HDR histogram, buckets get wider as values grow: each power of two is split into 16 buckets,
+ * so any percentile is accurate to within about 6% while the whole histogram stays a fixed, small array.<p>
+ * One histogram is often shared by every session (see Metrics), and most durations land in the same few buckets,
+ * so each bucket is a LongAdder: threads recording into a busy bucket at once get cells of their own instead of
+ * fighting over one counter. Reading the histogram adds the cells up.
+ */
+
+public class LatencyHistogram {
+    // constants
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    // instance variables
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds; negative values count as 0.
+     */
+    public void record(long nanos) {
+        counts[bucketOf(Math.max(0, nanos))].increment();
+    }
+
+    /**
+     * @return The number of durations recorded.
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts[i].sum();
+        }
+        return total;
+    }
+
+    /**
+     * @param percentile The percentile from 0 to 100, e.g. 99 for p99.
+     * @return The smallest recorded bucket value at or above the percentile, in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        // one read of every bucket, so durations recorded meanwhile can't move the total under the search
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target && seen > 0) {
+                return highestValueIn(i);
+            }
+        }
+        return highestValueIn(BUCKETS - 1);
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts[i].sum();
+            if (count != 0) {
+                counts[i].add(count);
+            }
+        }
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i].reset();
+        }
+    }
+
+    /**
+     * @return A one-line summary in microseconds.
+     */
+    public String toString() {
+        return String.format("count=%d p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus", getCount(),
+                getPercentile(50) / 1000.0, getPercentile(90) / 1000.0, getPercentile(99) / 1000.0, getPercentile(100) / 1000.0);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
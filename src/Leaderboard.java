@@ -0,0 +1,440 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The Leaderboard ranks finished runs by difficulty mode: most treasures first, then most gold, then fewest turns.
+ * Each player keeps their best run in each mode.<p>
+ * Each mode's board is a ConcurrentSkipListSet kept in rank order, so any number of sessions can submit runs and
+ * read the top runs at once; submitting only locks the one player's entry while it is swapped for a better run.
+ * Counting a skip list walks all of it, so each board also keeps its number of players in an AtomicInteger and
+ * its runs' scores in a Fenwick tree of score buckets. A player's rank is the number of runs in better buckets, read from
+ * the tree in a few dozen array reads however many players there are, plus the runs ahead of theirs in their own bucket
+ * (the same treasures and gold within 1%), counted by walking the skip list from the front of the bucket to their entry.
+ * So the rank is exact, agrees with the order of top(), and only costs a walk over the few runs closest to the player's.<p>
+ * Improved runs are appended to a text file, one per line (mode, name, treasures, gold and turns, separated by tabs).
+ * Runs that were later beaten stay in the file until compact() rewrites it with only the current bests;
+ * reading the file back at startup keeps the best line per player, so a file cut off by a crash still loads.
+ * Only lines ending in a newline count: a last line without one may have been cut short mid-number, so it is dropped,
+ * and cut off the file before anything new is appended.
+ */
+
+public class Leaderboard implements Closeable {
+    // constants
+    private static final long COMPACT_CHECK_SECONDS = 60;
+
+    // instance variables
+    private final Path file;
+    private final ConcurrentMap<String, Board> boards = new ConcurrentHashMap<>(); // by mode code
+    private final ConcurrentMap<String, Entry> bests = new ConcurrentHashMap<>(); // by mode code and name
+    private final AtomicInteger linesInFile = new AtomicInteger();
+    private final Object fileLock = new Object(); // only held to write the file, never to rank or read
+    private BufferedWriter out;
+    private ScheduledExecutorService compactor;
+
+    /**
+     * Loads the leaderboard from its file, creating the file if it doesn't exist, and compacts it
+     * on a daemon thread whenever more than half of its lines are runs that have since been beaten.
+     *
+     * @param file The leaderboard file.
+     */
+    public Leaderboard(Path file) throws IOException {
+        this.file = file;
+        try {
+            dropTornLine(file);
+            try (BufferedReader in = Files.newBufferedReader(file)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    Entry entry = Entry.parse(line);
+                    if (entry != null) {
+                        keepIfBetter(entry);
+                        linesInFile.incrementAndGet();
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // a new leaderboard
+        }
+        out = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        compactor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "leaderboard-compact");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            if (linesInFile.get() > 2 * bests.size()) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    System.err.println("Couldn't compact " + file + ": " + e.getMessage());
+                }
+            }
+        }, COMPACT_CHECK_SECONDS, COMPACT_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Cuts the file back to its last newline, if it doesn't end with one, so only whole lines are read
+     * and runs appended from now on start on a line of their own.
+     */
+    private static void dropTornLine(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            long end = channel.size();
+            if (end == 0 || (channel.read(one, end - 1) == 1 && one.get(0) == '\n')) {
+                return;
+            }
+            long keep = end - 1;
+            while (keep > 0) {
+                one.clear();
+                channel.read(one, keep - 1);
+                if (one.get(0) == '\n') {
+                    break;
+                }
+                keep--;
+            }
+            channel.truncate(keep);
+        }
+    }
+
+    /**
+     * Records a finished run. It only goes on the board if it beats the player's best run in the mode.
+     *
+     * @param name The hunter's name.
+     * @param difficulty The mode the run was played in.
+     * @param treasures The number of treasures collected.
+     * @param gold The gold at the end.
+     * @param turns The number of turns taken.
+     * @return The player's rank in the mode afterwards, counting from 1.
+     */
+    public int submit(String name, DifficultyProfile difficulty, int treasures, int gold, int turns) {
+        Entry entry = new Entry(difficulty.getCode(), name.replaceAll("[\\t\\r\\n]", " "), treasures, gold, turns);
+        if (keepIfBetter(entry)) {
+            append(entry);
+        }
+        return getRank(difficulty, entry.name);
+    }
+
+    /**
+     * Puts the entry on its board if it beats the player's best so far.
+     *
+     * @return true if it did.
+     */
+    private boolean keepIfBetter(Entry entry) {
+        Board board = boards.computeIfAbsent(entry.mode, key -> new Board());
+        boolean[] kept = new boolean[1];
+        // the player's entry is locked while their run is swapped on the board, so two of their runs can't both stay
+        bests.compute(entry.key(), (key, best) -> {
+            if (best != null && best.compareTo(entry) <= 0) {
+                return best;
+            }
+            board.entries.add(entry);
+            board.ranks.add(entry, 1);
+            if (best != null) {
+                board.entries.remove(best);
+                board.ranks.add(best, -1);
+            } else {
+                board.players.incrementAndGet();
+            }
+            kept[0] = true;
+            return entry;
+        });
+        return kept[0];
+    }
+
+    private void append(Entry entry) {
+        synchronized (fileLock) {
+            try {
+                out.write(entry.toLine());
+                out.newLine();
+                out.flush();
+                linesInFile.incrementAndGet();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file with only each player's best run. The new file is written beside the old one and moved into place,
+     * so a crash part way through leaves the old file as it was.
+     */
+    public void compact() throws IOException {
+        synchronized (fileLock) {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            int lines = 0;
+            try (BufferedWriter compacted = Files.newBufferedWriter(temp)) {
+                for (Entry entry : bests.values()) {
+                    compacted.write(entry.toLine());
+                    compacted.newLine();
+                    lines++;
+                }
+            }
+            out.close();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            out = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            linesInFile.set(lines);
+        }
+    }
+
+    /**
+     * @param difficulty The mode.
+     * @param count The number of runs wanted.
+     * @return The best runs in the mode, best first.
+     */
+    public List<Entry> top(DifficultyProfile difficulty, int count) {
+        List<Entry> top = new ArrayList<>(count);
+        Board board = boards.get(difficulty.getCode());
+        if (board != null) {
+            for (Entry entry : board.entries) {
+                if (top.size() == count) {
+                    break;
+                }
+                top.add(entry);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Counts the players whose best run ranks ahead of the player's: those in better score buckets from the Fenwick tree,
+     * and those in the player's own bucket from the skip list, which keeps them together just before the player's entry.
+     * A rank read while runs are being submitted may be off by the runs in flight.
+     *
+     * @return The player's rank in the mode counting from 1, or 0 if they have no run in it.
+     */
+    public int getRank(DifficultyProfile difficulty, String name) {
+        Entry best = bests.get(difficulty.getCode() + "\t" + name);
+        if (best == null) {
+            return 0;
+        }
+        Board board = boards.get(best.mode);
+        long ahead = board.ranks.countAhead(best);
+        // the skip list walks forwards in constant time a step, so start from the front of the bucket
+        for (Entry entry : board.entries.tailSet(RankIndex.firstOfBucket(best))) {
+            if (entry.compareTo(best) >= 0) {
+                break;
+            }
+            ahead++;
+        }
+        return (int) ahead + 1;
+    }
+
+    /**
+     * @return The number of players with a run in the mode.
+     */
+    public int size(DifficultyProfile difficulty) {
+        Board board = boards.get(difficulty.getCode());
+        return board == null ? 0 : board.players.get();
+    }
+
+    /**
+     * Compacts the file and stops writing to it.
+     */
+    public void close() throws IOException {
+        compactor.shutdownNow();
+        compact();
+        synchronized (fileLock) {
+            out.close();
+        }
+    }
+
+    /**
+     * One mode's runs.
+     */
+    private static class Board {
+        private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(); // in rank order
+        private final AtomicInteger players = new AtomicInteger();
+        private final RankIndex ranks = new RankIndex();
+    }
+
+    /**
+     * A Fenwick tree counting runs by score bucket, best bucket first: one bucket per number of treasures and range of gold.
+     * A better bucket only holds better runs, so the runs in one bucket are next to each other on the board.
+     * Gold is bucketed like LatencyHistogram's durations, exactly below 128 and then 128 buckets per power of two.
+     * Every node is updated with an atomic add, so runs can be added and removed from any number of threads without a lock.
+     */
+    private static class RankIndex {
+        private static final int SUB_BUCKET_BITS = 7;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int GOLD_BUCKETS = (Integer.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+        private static final int TREASURE_LEVELS = TreasureHunter.TREASURES.length + 1; // from none to all of them
+
+        private final AtomicLongArray tree = new AtomicLongArray(TREASURE_LEVELS * GOLD_BUCKETS + 1); // 1-based
+
+        void add(Entry entry, long count) {
+            for (int i = positionOf(entry); i < tree.length(); i += i & -i) {
+                tree.addAndGet(i, count);
+            }
+        }
+
+        /**
+         * @return The number of runs in buckets better than the entry's.
+         */
+        long countAhead(Entry entry) {
+            long ahead = 0;
+            for (int i = positionOf(entry) - 1; i > 0; i -= i & -i) {
+                ahead += tree.get(i);
+            }
+            return ahead;
+        }
+
+        /**
+         * @return The entry's bucket, from 1 for the best.
+         */
+        private static int positionOf(Entry entry) {
+            return (TREASURE_LEVELS - 1 - levelOf(entry)) * GOLD_BUCKETS + (GOLD_BUCKETS - 1 - goldBucketOf(entry)) + 1;
+        }
+
+        /**
+         * @return A run that sorts behind every run in a better bucket than the entry's and ahead of every run in its bucket.
+         */
+        static Entry firstOfBucket(Entry entry) {
+            int bucket = goldBucketOf(entry);
+            long mostGold = bucket;
+            if (bucket >= SUB_BUCKETS) {
+                int shift = bucket / SUB_BUCKETS - 1;
+                mostGold = ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift) - 1;
+            }
+            return new Entry(entry.mode, "", levelOf(entry), (int) Math.min(mostGold, Integer.MAX_VALUE), Integer.MIN_VALUE);
+        }
+
+        private static int levelOf(Entry entry) {
+            return Math.max(0, Math.min(entry.treasures, TREASURE_LEVELS - 1));
+        }
+
+        private static int goldBucketOf(Entry entry) {
+            int gold = Math.max(0, entry.gold);
+            if (gold < SUB_BUCKETS) {
+                return gold;
+            }
+            int shift = 31 - Integer.numberOfLeadingZeros(gold) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + ((gold >>> shift) & (SUB_BUCKETS - 1));
+        }
+    }
+
+    /**
+     * One player's best run in one mode.
+     */
+    public static class Entry implements Comparable<Entry> {
+        private final String mode;
+        private final String name;
+        private final int treasures;
+        private final int gold;
+        private final int turns;
+
+        Entry(String mode, String name, int treasures, int gold, int turns) {
+            this.mode = mode;
+            this.name = name;
+            this.treasures = treasures;
+            this.gold = gold;
+            this.turns = turns;
+        }
+
+        /**
+         * @return The entry, or null if the line isn't a whole entry.
+         */
+        static Entry parse(String line) {
+            String[] fields = line.split("\t");
+            if (fields.length != 5) {
+                return null;
+            }
+            try {
+                return new Entry(fields[0], fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[4]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        String toLine() {
+            return mode + "\t" + name + "\t" + treasures + "\t" + gold + "\t" + turns;
+        }
+
+        String key() {
+            return mode + "\t" + name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getTreasures() {
+            return treasures;
+        }
+
+        public int getGold() {
+            return gold;
+        }
+
+        public int getTurns() {
+            return turns;
+        }
+
+        /**
+         * Better runs come first; runs that tie are ordered by name, so every player has their own place.
+         */
+        public int compareTo(Entry other) {
+            if (treasures != other.treasures) {
+                return Integer.compare(other.treasures, treasures);
+            }
+            if (gold != other.gold) {
+                return Integer.compare(other.gold, gold);
+            }
+            if (turns != other.turns) {
+                return Integer.compare(turns, other.turns);
+            }
+            return name.compareTo(other.name);
+        }
+
+        public boolean equals(Object other) {
+            return other instanceof Entry && compareTo((Entry) other) == 0 && mode.equals(((Entry) other).mode);
+        }
+
+        public int hashCode() {
+            return key().hashCode();
+        }
+
+        public String toString() {
+            return String.format("%-20s %d treasures, %d gold, %d turns", name, treasures, gold, turns);
+        }
+    }
+
+    /**
+     * Prints the top runs in every mode.<p>
+     * Usage: Leaderboard file [count]
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        try (Leaderboard leaderboard = new Leaderboard(Path.of(args[0]))) {
+            DifficultyProfile[] modes = {DifficultyProfile.HARD, DifficultyProfile.NORMAL, DifficultyProfile.EASY, DifficultyProfile.SAMURAI, DifficultyProfile.TEST};
+            for (DifficultyProfile mode : modes) {
+                if (leaderboard.size(mode) > 0) {
+                    System.out.println(mode.getName() + " (" + leaderboard.size(mode) + " players)");
+                    int rank = 1;
+                    for (Entry entry : leaderboard.top(mode, count)) {
+                        System.out.println(String.format("%4d. ", rank++) + entry);
+                    }
+                }
+            }
+        }
+    }
+}
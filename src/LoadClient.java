@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A load generator for the GameServer.<p>
+ * It opens some idle connections that only sit at the name prompt, plus some active ones that play a fixed round of
+ * commands as fast as the server answers, and reports the round-trip latency seen by the players.<p>
+ * Usage: LoadClient port [activeSessions] [idleSessions] [commandsPerSession]
+ */
+
+public class LoadClient {
+    // constants
+    private static final String[] COMMANDS = {"l", "h", "d", "m"};
+    private static final String MENU_PROMPT = "What's your next move? ";
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        int active = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int idle = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int commands = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        List<Socket> idleSockets = new ArrayList<>();
+        for (int i = 0; i < idle; i++) {
+            idleSockets.add(new Socket(InetAddress.getLoopbackAddress(), port));
+        }
+        System.out.println("opened " + idle + " idle sessions");
+
+        LatencyHistogram latency = new LatencyHistogram();
+        CountDownLatch done = new CountDownLatch(active);
+        long start = System.nanoTime();
+        for (int i = 0; i < active; i++) {
+            String name = "load" + i;
+            Thread player = new Thread(() -> {
+                try {
+                    play(port, name, commands, latency);
+                } catch (IOException e) {
+                    System.out.println(name + " failed: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+            player.start();
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d active sessions x %d commands in %.2f s (%.0f commands/s)%n", active, commands, seconds,
+                latency.getCount() / seconds);
+        System.out.println("round trip: " + latency);
+
+        for (Socket socket : idleSockets) {
+            socket.close();
+        }
+    }
+
+    /**
+     * Plays one session: name, normal mode, then the commands in a loop, timing each round trip.
+     */
+    private static void play(int port, String name, int commands, LatencyHistogram latency) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+
+            readUntil(in, "? ");
+            send(out, name);
+            readUntil(in, ": ");
+            send(out, "e");
+            readUntil(in, MENU_PROMPT);
+            for (int i = 0; i < commands; i++) {
+                long start = System.nanoTime();
+                send(out, COMMANDS[i % COMMANDS.length]);
+                if (!readUntil(in, MENU_PROMPT)) {
+                    return;
+                }
+                latency.record(System.nanoTime() - start);
+            }
+            send(out, "x");
+        }
+    }
+
+    private static void send(OutputStream out, String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Reads until the text received ends with the given prompt.
+     *
+     * @return false if the server closed the connection first.
+     */
+    private static boolean readUntil(InputStream in, String prompt) throws IOException {
+        byte[] expected = prompt.getBytes(StandardCharsets.UTF_8);
+        byte[] tail = new byte[expected.length];
+        int seen = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            System.arraycopy(tail, 1, tail, 0, tail.length - 1);
+            tail[tail.length - 1] = (byte) b;
+            seen++;
+            if (seen >= expected.length && java.util.Arrays.equals(tail, expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Market sets item prices from supply and demand, for the optional market mode where every shop that shares the
+ * market (usually every session on a server) charges the same moving prices.<p>
+ * Every trade is counted in a LongAdder per item and direction, so thousands of traders can count at once without
+ * fighting over one number. On every tick the new trades are added to a decaying volume (older trades count for less
+ * each tick), and each item's price is set from how much more it was bought than sold: from half its catalog price
+ * when everyone is selling to one and a half times it when everyone is buying.<p>
+ * The prices are published as a new ItemCatalog through an AtomicReference, so reading a price is a single volatile
+ * read and an array read; buyers never wait for a tick, and a tick never waits for buyers.
+ * Prices that move with other players' trades mean a game played in market mode can't be replayed exactly,
+ * so TreasureHunterRunner doesn't record one.
+ */
+
+public class Market {
+    // constants
+    public static final long DEFAULT_TICK_MILLIS = 1000;
+    private static final double DECAY = 0.9;        // the share of the volume kept from one tick to the next
+    private static final double SENSITIVITY = 0.5;  // how far prices can move from the catalog's, either way
+    private static final double LIQUIDITY = 10;     // trades it takes before the volume moves prices much
+
+    // instance variables
+    private final ItemCatalog base;
+    private final LongAdder[] bought = new LongAdder[Items.MAX_ITEMS]; // indexed by item id
+    private final LongAdder[] sold = new LongAdder[Items.MAX_ITEMS];
+    private final AtomicReference<ItemCatalog> prices;
+    // only used by tick()
+    private final long[] boughtSeen = new long[Items.MAX_ITEMS];
+    private final long[] soldSeen = new long[Items.MAX_ITEMS];
+    private final double[] buyVolume = new double[Items.MAX_ITEMS];
+    private final double[] sellVolume = new double[Items.MAX_ITEMS];
+    private ScheduledExecutorService ticker;
+
+    /**
+     * @param base The catalog whose items are traded and whose prices the market starts from.
+     */
+    public Market(ItemCatalog base) {
+        this.base = base;
+        for (int id = 0; id < Items.MAX_ITEMS; id++) {
+            bought[id] = new LongAdder();
+            sold[id] = new LongAdder();
+        }
+        prices = new AtomicReference<>(base);
+    }
+
+    /**
+     * @return The current prices; never blocks.
+     */
+    public ItemCatalog getPrices() {
+        return prices.get();
+    }
+
+    /**
+     * Counts a purchase of the item from any shop on the market.
+     */
+    public void recordBuy(int itemId) {
+        bought[itemId].increment();
+    }
+
+    /**
+     * Counts a sale of the item to any shop on the market.
+     */
+    public void recordSell(int itemId) {
+        sold[itemId].increment();
+    }
+
+    /**
+     * @return The number of trades counted so far, bought and sold.
+     */
+    public long getTrades() {
+        long trades = 0;
+        for (int id = 0; id < Items.MAX_ITEMS; id++) {
+            trades += bought[id].sum() + sold[id].sum();
+        }
+        return trades;
+    }
+
+    /**
+     * Folds the trades since the last tick into the volumes and publishes new prices.
+     * Called by the ticker started with start(), or directly for a market that moves only when told to.
+     */
+    public synchronized void tick() {
+        List<ItemCatalog.Entry> entries = new ArrayList<>();
+        for (ItemCatalog.Entry entry : base.getEntries()) {
+            int id = entry.getId();
+            // the counters only grow, so reading past what was seen last time loses no trade made during the tick
+            long buys = bought[id].sum();
+            long sells = sold[id].sum();
+            buyVolume[id] = buyVolume[id] * DECAY + (buys - boughtSeen[id]);
+            sellVolume[id] = sellVolume[id] * DECAY + (sells - soldSeen[id]);
+            boughtSeen[id] = buys;
+            soldSeen[id] = sells;
+
+            int cost = entry.getCost();
+            if (cost > 0) {
+                double pressure = (buyVolume[id] - sellVolume[id]) / (buyVolume[id] + sellVolume[id] + LIQUIDITY);
+                cost = Math.max(1, (int) Math.round(cost * (1 + SENSITIVITY * pressure)));
+            }
+            entries.add(new ItemCatalog.Entry(entry.getName(), cost, entry.isSamuraiOnly()));
+        }
+        prices.set(new ItemCatalog(entries));
+    }
+
+    /**
+     * Ticks on a daemon thread every period until stop() is called.
+     *
+     * @param tickMillis The time between ticks, in milliseconds.
+     */
+    public synchronized void start(long tickMillis) {
+        stop();
+        ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "market-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * @return Each item's current price next to its catalog price.
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder("market prices:");
+        ItemCatalog current = getPrices();
+        for (ItemCatalog.Entry entry : base.getEntries()) {
+            str.append(' ').append(entry.getName()).append(' ').append(current.getCost(entry.getId())).append('/').append(entry.getCost());
+        }
+        return str.toString();
+    }
+}
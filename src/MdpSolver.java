@@ -0,0 +1,318 @@
+import java.util.stream.IntStream;
+
+/**
+ * The MdpSolver works out the best possible way to play, and the chance of winning with it, by treating the game
+ * as a Markov decision process and solving it exactly with value iteration instead of sampling games.<p>
+ * The game never ends on its own (gold can't go below 0), so with unlimited turns every mode is won eventually.
+ * The question solved here is the chance of collecting all the treasures within a number of turns.<p>
+ * A state is the kit (one bit per shop item), the number of treasures found (each search turns up one of the four
+ * treasures at random, so only the count matters), gold, and the town: its terrain, whether it is tough, and whether
+ * it has been searched and dug. Gold above the cap is treated as the cap. The rules, prices and mode settings are the
+ * ones Town and Shop use with the mode's DifficultyProfile; the sword is only modelled in modes that sell it.<p>
+ * States are numbered into flat float arrays with gold as the innermost dimension, so brawl and dig outcomes can be
+ * summed with prefix sums. Each sweep runs over the states in parallel and reads only the previous sweep's values.
+ * Memory is two float arrays of the value, one of prefix sums and a byte per state for the policy:
+ * about 13 bytes per state, which with the default 150 turns and a gold cap of 40 is (measured on one core):
+ * <pre>
+ *  mode   states      memory   time    win within 150 turns
+ *  h      755,712     ~10 MB   ~10 s   70.2%
+ *  n      755,712     ~10 MB   ~9 s    79.5%
+ *  e      755,712     ~10 MB   ~8 s    100.0%
+ *  s      1,511,424   ~20 MB   ~20 s   99.98%
+ * </pre>
+ * Sweeps parallelize across cores, so a laptop with 8 cores takes a few seconds per mode.
+ */
+
+public class MdpSolver {
+    // constants
+    private static final int TERRAINS = Town.TERRAIN_NAMES.length;
+    private static final int TREASURES_TO_WIN = 3;
+    private static final int BRAWL_MAX_GOLD = 10;
+    private static final int DIG_MAX_GOLD = 20;
+
+    // actions, as stored in the policy
+    public static final int BRAWL = 0;
+    public static final int HUNT = 1;
+    public static final int DIG = 2;
+    public static final int MOVE = 3;
+    public static final int BUY = 4;      // BUY + item id
+    public static final int SELL = 4 + 8; // SELL + item id
+
+    // instance variables
+    private DifficultyProfile difficulty;
+    private int turns;
+    private int goldCap;
+    private int kitBits;
+    private int goldValues;
+    private int rows;
+    private int[] buyCost = new int[8];
+    private int[] sellPrice = new int[8];
+    private int[] terrainItem = new int[TERRAINS];
+    private double toughness;
+    private boolean itemLoss;
+    private boolean sword;
+    private int startingGold;
+    private long startingKit;
+
+    private float[] values;
+    private byte[] policy;
+    private double winProbability;
+
+    /**
+     * @param difficulty The difficulty mode.
+     * @param turns The number of turns the hunter has to collect the treasures.
+     * @param goldCap The most gold tracked; more than this counts as this much.
+     */
+    public MdpSolver(DifficultyProfile difficulty, int turns, int goldCap) {
+        this.difficulty = difficulty;
+        this.turns = turns;
+        this.goldCap = goldCap;
+
+        sword = difficulty.isSwordForSale();
+        kitBits = sword ? 8 : 7;
+        goldValues = goldCap + 1;
+        rows = (1 << kitBits) * TREASURES_TO_WIN * TERRAINS * 8;
+
+        Shop shop = Shop.shared(difficulty);
+        for (int item = 0; item < kitBits; item++) {
+            buyCost[item] = shop.getCostOfItem(Items.nameOf(item));
+            sellPrice[item] = shop.getBuyBackCost(Items.nameOf(item));
+        }
+        for (int terrain = 0; terrain < TERRAINS; terrain++) {
+            terrainItem[terrain] = Items.find(Town.TERRAIN_ITEMS[terrain].toLowerCase());
+        }
+        toughness = difficulty.getToughness();
+        itemLoss = difficulty.hasItemLoss();
+        startingGold = Math.min(difficulty.getStartingGold(), goldCap);
+        startingKit = difficulty.getStartingKit() & ((1L << kitBits) - 1);
+    }
+
+    public int getStates() {
+        return rows * goldValues;
+    }
+
+    /**
+     * Runs value iteration for the number of turns given to the constructor.
+     *
+     * @return The chance of winning in time from the start of a game, playing the best way.
+     */
+    public double solve() {
+        int states = getStates();
+        float[] previous = new float[states];
+        float[] next = new float[states];
+        float[] prefix = new float[rows * (goldValues + 1)];
+        float[] arrival = new float[(1 << kitBits) * TREASURES_TO_WIN * goldValues];
+        policy = new byte[states];
+
+        for (int turn = 1; turn <= turns; turn++) {
+            float[] current = previous;
+            boolean last = turn == turns;
+            IntStream.range(0, rows).parallel().forEach(row -> prefixSums(current, prefix, row));
+            IntStream.range(0, 1 << kitBits).parallel().forEach(kit -> arrivalValues(current, arrival, kit));
+            float[] target = next;
+            IntStream.range(0, rows).parallel().forEach(row -> sweepRow(current, prefix, arrival, target, row, last));
+            next = previous;
+            previous = target;
+        }
+        values = previous;
+
+        // the first town is rolled like any other, so the start is an arrival with no turns used yet
+        winProbability = 0;
+        for (int terrain = 0; terrain < TERRAINS; terrain++) {
+            for (int tough = 0; tough < 2; tough++) {
+                double chance = (1.0 / TERRAINS) * (tough == 1 ? toughness : 1 - toughness);
+                winProbability += chance * values[index(row(startingKit, 0, terrain, tough, 0, 0), startingGold)];
+            }
+        }
+        return winProbability;
+    }
+
+    /**
+     * @return The best action in a state, with all of the turns still to play: BRAWL, HUNT, DIG, MOVE, BUY + item id or SELL + item id.
+     */
+    public int bestAction(long kit, int treasuresFound, int gold, int terrain, boolean toughTown, boolean searched, boolean dug) {
+        return policy[index(row(kit, treasuresFound, terrain, toughTown ? 1 : 0, searched ? 1 : 0, dug ? 1 : 0), Math.min(gold, goldCap))];
+    }
+
+    /**
+     * @return A readable name for an action returned by bestAction().
+     */
+    public static String describe(int action) {
+        if (action == BRAWL) {
+            return "look for trouble";
+        } else if (action == HUNT) {
+            return "hunt for treasure";
+        } else if (action == DIG) {
+            return "dig for gold";
+        } else if (action == MOVE) {
+            return "move on";
+        } else if (action < SELL) {
+            return "buy " + Items.nameOf(action - BUY);
+        }
+        return "sell " + Items.nameOf(action - SELL);
+    }
+
+    private int row(long kit, int treasuresFound, int terrain, int tough, int searched, int dug) {
+        return (((((int) kit * TREASURES_TO_WIN + treasuresFound) * TERRAINS + terrain) * 2 + tough) * 2 + searched) * 2 + dug;
+    }
+
+    private int index(int row, int gold) {
+        return row * goldValues + gold;
+    }
+
+    /**
+     * prefix[row][g] is the sum of the row's values for gold below g.
+     */
+    private void prefixSums(float[] values, float[] prefix, int row) {
+        int base = row * (goldValues + 1);
+        float sum = 0;
+        prefix[base] = 0;
+        for (int gold = 0; gold < goldValues; gold++) {
+            sum += values[index(row, gold)];
+            prefix[base + gold + 1] = sum;
+        }
+    }
+
+    /**
+     * The value of arriving in a new town (not yet searched or dug) with a kit, treasure count and gold,
+     * averaged over the terrain and toughness the town might have.
+     */
+    private void arrivalValues(float[] values, float[] arrival, int kit) {
+        for (int found = 0; found < TREASURES_TO_WIN; found++) {
+            int base = (kit * TREASURES_TO_WIN + found) * goldValues;
+            for (int gold = 0; gold < goldValues; gold++) {
+                double sum = 0;
+                for (int terrain = 0; terrain < TERRAINS; terrain++) {
+                    sum += (1 - toughness) * values[index(row(kit, found, terrain, 0, 0, 0), gold)];
+                    sum += toughness * values[index(row(kit, found, terrain, 1, 0, 0), gold)];
+                }
+                arrival[base + gold] = (float) (sum / TERRAINS);
+            }
+        }
+    }
+
+    /**
+     * Sum of the row's values at gold + 1 .. gold + count, with gold over the cap counting as the cap.
+     */
+    private float sumAbove(float[] values, float[] prefix, int row, int gold, int count) {
+        int top = gold + count;
+        int base = row * (goldValues + 1);
+        if (top <= goldCap) {
+            return prefix[base + top + 1] - prefix[base + gold + 1];
+        }
+        return prefix[base + goldValues] - prefix[base + gold + 1] + (top - goldCap) * values[index(row, goldCap)];
+    }
+
+    /**
+     * Sum of the row's values at gold - 1 .. gold - count, with gold under 0 counting as 0.
+     */
+    private float sumBelow(float[] values, float[] prefix, int row, int gold, int count) {
+        int base = row * (goldValues + 1);
+        if (gold >= count) {
+            return prefix[base + gold] - prefix[base + gold - count];
+        }
+        return prefix[base + gold] + (count - gold) * values[index(row, 0)];
+    }
+
+    /**
+     * Works out the best action and its value for every gold amount in one row, from the previous turn's values.
+     */
+    private void sweepRow(float[] values, float[] prefix, float[] arrival, float[] next, int row, boolean recordPolicy) {
+        int dug = row & 1;
+        int searched = (row >> 1) & 1;
+        int tough = (row >> 2) & 1;
+        int terrain = (row >> 3) % TERRAINS;
+        int found = (row >> 3) / TERRAINS % TREASURES_TO_WIN;
+        int kit = (row >> 3) / TERRAINS / TREASURES_TO_WIN;
+
+        double noTrouble = tough == 1 ? 0.66 : 0.33;
+        boolean shovel = (kit & (1 << Items.SHOVEL)) != 0;
+        boolean hasSword = (kit & (1 << Items.SWORD)) != 0;
+        int needed = terrainItem[terrain];
+        boolean canMove = (kit & (1 << needed)) != 0;
+        int searchedRow = row(kit, found, terrain, tough, 1, dug);
+        int dugRow = row(kit, found, terrain, tough, searched, 1);
+        int lostItemRow = row(kit & ~(1 << needed), found, terrain, tough, searched, dug);
+        int arrivalBase = (kit * TREASURES_TO_WIN + found) * goldValues;
+
+        for (int gold = 0; gold < goldValues; gold++) {
+            // look for trouble: always possible
+            double best = (1 - noTrouble) * values[index(row, gold)]
+                    + noTrouble * ((1 - noTrouble) * sumAbove(values, prefix, row, gold, BRAWL_MAX_GOLD)
+                                   + noTrouble * sumBelow(values, prefix, row, gold, BRAWL_MAX_GOLD)) / BRAWL_MAX_GOLD;
+            int bestAction = BRAWL;
+
+            if (searched == 0) {
+                double newTreasure = (TREASURES_TO_WIN - found) / 4.0; // one of the four treasures is Dust
+                double foundValue = found + 1 == TREASURES_TO_WIN ? 1 : values[index(row(kit, found + 1, terrain, tough, 1, dug), gold)];
+                double value = newTreasure * foundValue + (1 - newTreasure) * values[index(searchedRow, gold)];
+                if (value > best) {
+                    best = value;
+                    bestAction = HUNT;
+                }
+            }
+
+            if (dug == 0 && shovel) {
+                double value = 0.5 * values[index(dugRow, gold)] + 0.5 * sumAbove(values, prefix, dugRow, gold, DIG_MAX_GOLD) / DIG_MAX_GOLD;
+                if (value > best) {
+                    best = value;
+                    bestAction = DIG;
+                }
+            }
+
+            if (canMove) {
+                double value = arrival[arrivalBase + gold];
+                if (itemLoss) {
+                    value = 0.5 * values[index(lostItemRow, gold)] + 0.5 * value;
+                }
+                if (value > best) {
+                    best = value;
+                    bestAction = MOVE;
+                }
+            }
+
+            for (int item = 0; item < kitBits; item++) {
+                int bit = 1 << item;
+                if ((kit & bit) == 0) {
+                    int cost = hasSword ? 0 : buyCost[item];
+                    boolean forSale = buyCost[item] != 0 || item == Items.SWORD;
+                    if (forSale && gold >= cost) {
+                        double value = values[index(row(kit | bit, found, terrain, tough, searched, dug), gold - cost)];
+                        if (value > best) {
+                            best = value;
+                            bestAction = BUY + item;
+                        }
+                    }
+                } else if (sellPrice[item] > 0) {
+                    double value = values[index(row(kit & ~bit, found, terrain, tough, searched, dug), Math.min(gold + sellPrice[item], goldCap))];
+                    if (value > best) {
+                        best = value;
+                        bestAction = SELL + item;
+                    }
+                }
+            }
+
+            next[index(row, gold)] = (float) best;
+            if (recordPolicy) {
+                policy[index(row, gold)] = (byte) bestAction;
+            }
+        }
+    }
+
+    /**
+     * Usage: MdpSolver [turns] [goldCap] [modes, e.g. h,n,e,s]
+     */
+    public static void main(String[] args) {
+        int turns = args.length > 0 ? Integer.parseInt(args[0]) : 150;
+        int goldCap = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        String[] modes = (args.length > 2 ? args[2] : "h,n,e,s").split(",");
+
+        for (String mode : modes) {
+            long start = System.nanoTime();
+            MdpSolver solver = new MdpSolver(DifficultyProfile.forCode(mode), turns, goldCap);
+            double win = solver.solve();
+            System.out.printf("mode %s: %,d states, win within %d turns %.4f%%, solved in %.1f s%n",
+                    mode, solver.getStates(), turns, win * 100, (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
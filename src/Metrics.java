@@ -0,0 +1,219 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Metrics is the game's one registry of counters and latency histograms, shared by every game in the process.<p>
+ * Classes look up what they count once, into static fields, so counting during play is just an increment.
+ * Counters are LongAdders, which spread updates from different threads over separate cells,
+ * so many sessions or simulation threads can count the same thing without slowing each other down.<p>
+ * The numbers can be read with report(), over JMX under the name treasurehunter:type=Metrics, or from a text file
+ * rewritten every few seconds by startDump().
+ */
+
+public class Metrics {
+    // constants
+    public static final String OBJECT_NAME = "treasurehunter:type=Metrics";
+
+    // static variables
+    private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    /**
+     * @param name The counter's name, e.g. "town.brawl.won".
+     * @return The counter with that name, created the first time it is asked for.
+     */
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * @param name The histogram's name, e.g. "turn.nanos".
+     * @return The histogram with that name, created the first time it is asked for.
+     */
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * @return Every counter's current value, sorted by name.
+     */
+    public static Map<String, Long> counters() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : COUNTERS.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().sum());
+        }
+        return values;
+    }
+
+    /**
+     * Sets every counter and histogram back to zero.
+     */
+    public static void reset() {
+        COUNTERS.values().forEach(LongAdder::reset);
+        HISTOGRAMS.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * @return Every counter and histogram, one per line, sorted by name.
+     */
+    public static String report() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Long> entry : counters().entrySet()) {
+            text.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            text.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Makes the metrics readable over JMX (e.g. in JConsole). Calling it again does nothing.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new View(), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Couldn't register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Rewrites a text file with report() every period, on a daemon thread, until the process ends.
+     * The file is written beside itself and moved into place, so a reader never sees half a report.
+     *
+     * @param file The file to write.
+     * @param periodSeconds How often to write it.
+     */
+    public static synchronized void startDump(Path file, long periodSeconds) {
+        if (dumper != null) {
+            dumper.shutdownNow();
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(file), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes report() to a file once.
+     */
+    public static void dump(Path file) {
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, report());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Couldn't write metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The JMX view of the registry: one long attribute per counter, and count, p50, p99 and max (in nanoseconds)
+     * for each histogram. Attributes are looked up when read, so metrics added later show up too.
+     * Every attribute is read-only, and reset is the only operation.
+     */
+    private static class View implements DynamicMBean {
+
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            LongAdder counter = COUNTERS.get(attribute);
+            if (counter != null) {
+                return counter.sum();
+            }
+            int dot = attribute.lastIndexOf('.');
+            LatencyHistogram histogram = dot < 0 ? null : HISTOGRAMS.get(attribute.substring(0, dot));
+            if (histogram != null) {
+                String statistic = attribute.substring(dot + 1);
+                if (statistic.equals("count")) {
+                    return histogram.getCount();
+                } else if (statistic.equals("p50")) {
+                    return histogram.getPercentile(50);
+                } else if (statistic.equals("p99")) {
+                    return histogram.getPercentile(99);
+                } else if (statistic.equals("max")) {
+                    return histogram.getPercentile(100);
+                }
+            }
+            throw new AttributeNotFoundException("No metric " + attribute);
+        }
+
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("No writable metric " + attribute.getName() + "; metrics are read-only");
+        }
+
+        /**
+         * @return The attributes that exist, leaving out any name that isn't a metric.
+         */
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // left out, as the DynamicMBean contract asks
+                }
+            }
+            return list;
+        }
+
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            if (actionName.equals("reset") && (signature == null || signature.length == 0)) {
+                reset();
+                return null;
+            }
+            throw new ReflectionException(new NoSuchMethodException(actionName), "No operation " + actionName);
+        }
+
+        public MBeanInfo getMBeanInfo() {
+            Map<String, MBeanAttributeInfo> attributes = new TreeMap<>();
+            for (String name : COUNTERS.keySet()) {
+                attributes.put(name, new MBeanAttributeInfo(name, "long", "counter", true, false, false));
+            }
+            for (String name : HISTOGRAMS.keySet()) {
+                for (String statistic : new String[] {"count", "p50", "p99", "max"}) {
+                    String attribute = name + "." + statistic;
+                    attributes.put(attribute, new MBeanAttributeInfo(attribute, "long", "histogram " + statistic, true, false, false));
+                }
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Treasure Hunter metrics",
+                    attributes.values().toArray(new MBeanAttributeInfo[0]), null,
+                    new MBeanOperationInfo[] {
+                        new MBeanOperationInfo("reset", "Sets every metric back to zero", null, "void", MBeanOperationInfo.ACTION)
+                    }, null);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+import java.awt.Color;
+
+/**
+ * A Display that throws everything away, for simulations where nobody is watching.
+ */
+
+public class NullDisplay implements Display {
+    /** NullDisplay has no state, so one instance can be shared by every game. */
+    public static final NullDisplay INSTANCE = new NullDisplay();
+
+    public void addTextToWindow(String text) {
+    }
+
+    public void addTextToWindow(String text, Color color) {
+    }
+
+    public void clear() {
+    }
+
+    public void print(String message) {
+    }
+
+    public void println(String message) {
+    }
+
+    public void flush() {
+    }
+}
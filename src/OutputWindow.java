@@ -1,17 +1,49 @@
 import java.awt.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.swing.JFrame;
 import javax.swing.JTextPane;
-import javax.swing.text.Style;
+import javax.swing.SwingUtilities;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
 
-public class OutputWindow {
+/**
+ * The Swing window the game's menu is shown in; dialogue printed with print() and println() still goes to the console.<p>
+ * Text added from the game thread is collected into a frame and only shown when flush() is called,
+ * which hands the whole frame to the Swing event thread in one task. Swing components are only touched on that thread.
+ */
 
-    private StyledDocument doc;
-    private Style style;
+public class OutputWindow implements Display {
+    // constants
+    private static final int FONT_SIZE = 15;
+
+    // static variables
+    private static final Map<Color, AttributeSet> ATTRIBUTES = new ConcurrentHashMap<>(); // one style per color, built once
+
+    // instance variables
     private JTextPane textPane;
+    private List<String> pendingText = new ArrayList<>();
+    private List<AttributeSet> pendingStyles = new ArrayList<>();
+    private boolean pendingClear;
 
     public OutputWindow() {
+        try {
+            SwingUtilities.invokeAndWait(this::createWindow);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Could not open the game window", e.getCause());
+        }
+    }
+
+    private void createWindow() {
         JFrame frame = new JFrame("Test");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // causes program to end when window is X'd out
         frame.setSize(500, 400); // window size
@@ -20,28 +52,83 @@ public class OutputWindow {
         c.setBackground(Color.black);
         textPane = new JTextPane(); // panel that can handle custom text
         textPane.setEditable(false); // prevents user from typing into window
-        doc = textPane.getStyledDocument(); // call getter method for panel's style doc
-        style = doc.addStyle("my style", null); // add a custom style to the doc
-        StyleConstants.setFontSize(style, 15); // apply font size to custom style
         frame.add(textPane); // add the panel to the frame
         frame.setVisible(true); // display the frame on screen
     }
 
-    public void addTextToWindow(String text, Color color) {
-        StyleConstants.setForeground(style, color); // apply color to custom style
-        try {
-            doc.insertString(doc.getLength(), text, style); } // insert text at end the panel
-        catch (Exception e) { }
+    public synchronized void addTextToWindow(String text, Color color) {
+        pendingText.add(text);
+        pendingStyles.add(attributesFor(color));
     }
 
     public void addTextToWindow(String text) {
-        StyleConstants.setForeground(style, Color.BLACK); // apply color to custom style
+        addTextToWindow(text, Color.BLACK);
+    }
+
+    /**
+     * Empties the window when the current frame is flushed; anything added since the last flush is dropped.
+     */
+    public synchronized void clear() {
+        pendingText.clear();
+        pendingStyles.clear();
+        pendingClear = true;
+    }
+
+    public void print(String message) {
+        System.out.print(message);
+    }
+
+    public void println(String message) {
+        System.out.println(message);
+    }
+
+    /**
+     * Shows everything added since the last flush.<p>
+     * When the frame starts with clear(), the new text is put in a fresh document off the event thread
+     * and swapped in, so the window is laid out once per frame instead of once per piece of text.
+     */
+    public void flush() {
+        System.out.flush();
+
+        String[] text;
+        AttributeSet[] styles;
+        boolean replace;
+        synchronized (this) {
+            text = pendingText.toArray(new String[0]);
+            styles = pendingStyles.toArray(new AttributeSet[0]);
+            replace = pendingClear;
+            pendingText.clear();
+            pendingStyles.clear();
+            pendingClear = false;
+        }
+
+        if (replace) {
+            // nothing shows this document yet, so it is safe to fill it on this thread
+            StyledDocument doc = new DefaultStyledDocument();
+            append(doc, text, styles);
+            SwingUtilities.invokeLater(() -> textPane.setStyledDocument(doc));
+        } else if (text.length > 0) {
+            SwingUtilities.invokeLater(() -> append(textPane.getStyledDocument(), text, styles));
+        }
+    }
+
+    private static void append(StyledDocument doc, String[] text, AttributeSet[] styles) {
         try {
-            doc.insertString(doc.getLength(), text, style); } // insert text at end the panel
-        catch (Exception e) { }
+            for (int i = 0; i < text.length; i++) {
+                doc.insertString(doc.getLength(), text[i], styles[i]); // insert text at end the panel
+            }
+        } catch (BadLocationException e) {
+            // only possible if the document is changed somewhere else while this runs
+            throw new IllegalStateException("Game window document changed while text was being added", e);
+        }
     }
 
-    public void clear() {
-        textPane.setText("");  // set panel's text to empty string to "reset it"
+    private static AttributeSet attributesFor(Color color) {
+        return ATTRIBUTES.computeIfAbsent(color, c -> {
+            SimpleAttributeSet attributes = new SimpleAttributeSet();
+            StyleConstants.setFontSize(attributes, FONT_SIZE); // apply font size to custom style
+            StyleConstants.setForeground(attributes, c); // apply color to custom style
+            return attributes.copyAttributes();
+        });
     }
-}
\ No newline at end of file
+}
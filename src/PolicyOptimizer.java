@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The PolicyOptimizer plays a grid of PolicyStrategy variations against each difficulty mode and ranks them by win rate.<p>
+ * Policies are played in rounds on one work-stealing pool. After each round a policy stops once its win rate is known
+ * to within the target margin, or once it is clearly behind the best policy of its mode (its 95% interval is entirely
+ * below the leader's), so most of the games go to the close contenders. Every policy in a round plays the same seeds,
+ * which makes the comparison between policies fairer than the raw number of games would suggest.<p>
+ * Usage: PolicyOptimizer [maxGamesPerPolicy] [modes, e.g. h,n,e,s] [threads] [seed]
+ */
+
+public class PolicyOptimizer {
+    // constants
+    private static final double Z_95 = 1.96;
+    private static final int MAX_TURNS = 150;
+    private static final long GAMES_PER_ROUND = 20_000;
+    private static final double TARGET_MARGIN = 0.001;
+    private static final int[] BRAWL_THRESHOLDS = {0, 5, 10, 15, 20, 30};
+
+    // instance variables
+    private ForkJoinPool pool;
+    private long maxGamesPerPolicy;
+    private long seed;
+
+    /**
+     * @param threads The number of worker threads.
+     * @param maxGamesPerPolicy The most games any one policy is played for in a mode.
+     * @param seed The seed for the whole search.
+     */
+    public PolicyOptimizer(int threads, long maxGamesPerPolicy, long seed) {
+        pool = new ForkJoinPool(threads);
+        this.maxGamesPerPolicy = maxGamesPerPolicy;
+        this.seed = seed;
+    }
+
+    /**
+     * @return Every combination of policy parameters searched.
+     */
+    public static List<PolicyStrategy> policyGrid() {
+        List<PolicyStrategy> policies = new ArrayList<>();
+        boolean[] choices = {true, false};
+        for (boolean buyOnlyWhenStuck : choices) {
+            for (boolean alwaysDig : choices) {
+                for (boolean buyShovel : choices) {
+                    for (int brawlBelowGold : BRAWL_THRESHOLDS) {
+                        policies.add(new PolicyStrategy(buyOnlyWhenStuck, alwaysDig, buyShovel, brawlBelowGold));
+                    }
+                }
+            }
+        }
+        return policies;
+    }
+
+    /**
+     * Ranks the policies for one difficulty mode.
+     *
+     * @param difficulty The difficulty mode.
+     * @param policies The policies to compare.
+     * @return The candidates, best first.
+     */
+    public List<Candidate> rank(DifficultyProfile difficulty, List<PolicyStrategy> policies) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (PolicyStrategy policy : policies) {
+            candidates.add(new Candidate(policy, new Simulation(difficulty, policy, MAX_TURNS)));
+        }
+
+        int round = 0;
+        List<Candidate> running = new ArrayList<>(candidates);
+        while (!running.isEmpty()) {
+            List<ForkJoinTask<SimulationResult>> tasks = new ArrayList<>();
+            for (Candidate candidate : running) {
+                SimulationRunner runner = new SimulationRunner(candidate.simulation, pool.getParallelism());
+                // the same seed for every policy in the round, so they all face the same towns and rolls
+                tasks.add(pool.submit(runner.newTask(GAMES_PER_ROUND, new SplittableRandomSource(seed + round))));
+            }
+            for (int i = 0; i < running.size(); i++) {
+                running.get(i).result.merge(tasks.get(i).join());
+            }
+            round++;
+
+            double bestLowerBound = 0;
+            for (Candidate candidate : candidates) {
+                bestLowerBound = Math.max(bestLowerBound, candidate.getWinRate() - candidate.getMargin());
+            }
+            for (Candidate candidate : running) {
+                if (candidate.getMargin() <= TARGET_MARGIN) {
+                    candidate.status = "converged";
+                } else if (candidate.getWinRate() + candidate.getMargin() < bestLowerBound) {
+                    candidate.status = "dropped";
+                } else if (candidate.result.getGames() >= maxGamesPerPolicy) {
+                    candidate.status = "budget";
+                }
+            }
+            running.removeIf(candidate -> candidate.status != null);
+        }
+
+        candidates.sort(Comparator.comparingDouble(Candidate::getWinRate).reversed()
+                .thenComparingDouble(candidate -> candidate.result.getAverageTurns()));
+        return candidates;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * One policy and the games it has played so far.
+     */
+    public static class Candidate {
+        private PolicyStrategy policy;
+        private Simulation simulation;
+        private SimulationResult result = new SimulationResult(MAX_TURNS);
+        private String status; // null while still being played
+
+        Candidate(PolicyStrategy policy, Simulation simulation) {
+            this.policy = policy;
+            this.simulation = simulation;
+        }
+
+        public PolicyStrategy getPolicy() {
+            return policy;
+        }
+
+        public SimulationResult getResult() {
+            return result;
+        }
+
+        public double getWinRate() {
+            return result.getWinRate();
+        }
+
+        /**
+         * @return Half the width of the 95% confidence interval of the win rate.
+         */
+        public double getMargin() {
+            long games = result.getGames();
+            if (games == 0) {
+                return 1;
+            }
+            double p = getWinRate();
+            return Z_95 * Math.sqrt(Math.max(p * (1 - p), 0.25 / games) / games);
+        }
+
+        public String getStatus() {
+            return status;
+        }
+    }
+
+    public static void main(String[] args) {
+        long maxGames = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        String[] modes = (args.length > 1 ? args[1] : "h,n,e,s").split(",");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        PolicyOptimizer optimizer = new PolicyOptimizer(threads, maxGames, seed);
+        List<PolicyStrategy> policies = policyGrid();
+        for (String mode : modes) {
+            long start = System.nanoTime();
+            List<Candidate> ranked = optimizer.rank(DifficultyProfile.forCode(mode), policies);
+            long games = 0;
+            for (Candidate candidate : ranked) {
+                games += candidate.getResult().getGames();
+            }
+
+            System.out.printf("%nmode %s: %d policies, %d games in %.1f s%n", mode, ranked.size(), games, (System.nanoTime() - start) / 1e9);
+            System.out.printf("%4s  %-50s %9s %16s %8s %8s  %s%n", "rank", "policy", "games", "win rate", "turns", "gold", "status");
+            for (int i = 0; i < ranked.size(); i++) {
+                Candidate candidate = ranked.get(i);
+                SimulationResult result = candidate.getResult();
+                System.out.printf("%4d  %-50s %9d %7.2f%% +/-%5.2f%% %8.1f %8.1f  %s%n", i + 1, candidate.getPolicy(), result.getGames(),
+                        100 * candidate.getWinRate(), 100 * candidate.getMargin(), result.getAverageTurns(),
+                        result.getAverageFinalGold(), candidate.getStatus());
+            }
+        }
+        optimizer.shutdown();
+    }
+}
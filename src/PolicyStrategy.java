@@ -0,0 +1,84 @@
+/**
+ * A Strategy whose behaviour is set by a few parameters, so the PolicyOptimizer can compare many variations of it.<p>
+ * It never keeps state between calls, so one PolicyStrategy can be shared by every thread of a simulation.
+ */
+
+public class PolicyStrategy implements Strategy {
+    // instance variables
+    private boolean buyOnlyWhenStuck;
+    private boolean alwaysDig;
+    private boolean buyShovel;
+    private int brawlBelowGold;
+
+    /**
+     * @param buyOnlyWhenStuck true to buy the item for the terrain only once there is nothing else to do in town;
+     *                         false to buy it as soon as it can be afforded.
+     * @param alwaysDig true to dig in every town when a shovel is owned.
+     * @param buyShovel true to buy a shovel once the terrain item is owned and there is gold for it.
+     * @param brawlBelowGold Look for trouble while gold is below this amount before moving on.
+     */
+    public PolicyStrategy(boolean buyOnlyWhenStuck, boolean alwaysDig, boolean buyShovel, int brawlBelowGold) {
+        this.buyOnlyWhenStuck = buyOnlyWhenStuck;
+        this.alwaysDig = alwaysDig;
+        this.buyShovel = buyShovel;
+        this.brawlBelowGold = brawlBelowGold;
+    }
+
+    public String nextMove(Hunter hunter, Town town) {
+        String neededItem = town.getTerrain().getNeededItem();
+        boolean hasNeededItem = hunter.hasItemInKit(neededItem);
+        boolean canAffordNeededItem = hunter.getGold() >= town.getShop().getCostOfItem(neededItem);
+
+        if (!buyOnlyWhenStuck && !hasNeededItem && canAffordNeededItem) {
+            return "b";
+        }
+        if (!town.hasBeenSearched()) {
+            return "h";
+        }
+        if (alwaysDig && hunter.hasItemInKit(Items.SHOVEL) && !town.hasBeenDug()) {
+            return "d";
+        }
+        if (wantsShovel(hunter, town)) {
+            return "b";
+        }
+        if (hunter.getGold() < brawlBelowGold) {
+            return "l";
+        }
+        if (hasNeededItem) {
+            return "m";
+        }
+        if (canAffordNeededItem) {
+            return "b";
+        }
+        return "l";
+    }
+
+    public String itemToBuy(Hunter hunter, Town town) {
+        String neededItem = town.getTerrain().getNeededItem();
+        if (wantsShovel(hunter, town)) {
+            return "shovel";
+        }
+        return neededItem;
+    }
+
+    public String itemToSell(Hunter hunter, Town town) {
+        return null;
+    }
+
+    /**
+     * @return A short description of the parameters, for reports.
+     */
+    public String toString() {
+        return String.format("buy %s, dig %s, shovel %s, brawl below %d",
+                buyOnlyWhenStuck ? "when stuck" : "early", alwaysDig ? "always" : "never",
+                buyShovel ? "yes" : "no", brawlBelowGold);
+    }
+
+    private boolean wantsShovel(Hunter hunter, Town town) {
+        if (!buyShovel || hunter.hasItemInKit(Items.SHOVEL)) {
+            return false;
+        }
+        return hunter.hasItemInKit(town.getTerrain().getNeededItem())
+                && hunter.getGold() >= town.getShop().getCostOfItem("shovel");
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * An InputSource fed from another thread: whatever is offered is read by the game in order.<p>
+ * nextLine() waits until a line arrives or the queue is closed, so the game thread blocks while it waits for input;
+ * to play a game without a thread of its own, hand it the lines with TreasureHunter.accept() instead.
+ */
+
+public class QueueInput implements InputSource {
+    // constants
+    private static final String END = new String("end of input"); // compared by identity, never equal to a real line
+
+    // instance variables
+    private LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private volatile boolean closed;
+
+    /**
+     * Adds a line for the game to read.
+     *
+     * @param line The line.
+     * @return false if the queue has already been closed.
+     */
+    public boolean offer(String line) {
+        if (closed) {
+            return false;
+        }
+        return queue.offer(line);
+    }
+
+    /**
+     * Ends the input; the game sees null once the lines already offered have been read.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            queue.offer(END);
+        }
+    }
+
+    public String nextLine() {
+        try {
+            String line = queue.take();
+            if (line == END) {
+                queue.offer(END); // keep answering null after the end
+                return null;
+            }
+            return line;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * A RandomSource supplies the rolls for one game.<p>
+ * Each game (or each worker thread) gets its own RandomSource instead of sharing Math.random(),
+ * so games don't fight over one generator and a game started from a seed can be played again exactly.
+ */
+
+public interface RandomSource {
+    /**
+     * @return A random number from 0.0 (inclusive) to 1.0 (exclusive), like Math.random().
+     */
+    double nextDouble();
+
+    /**
+     * Creates a new, independent RandomSource from this one.
+     * Splitting the same source in the same order always gives the same children.
+     *
+     * @return The new RandomSource.
+     */
+    RandomSource split();
+}
@@ -0,0 +1,33 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * An InputSource that passes lines through from another source and writes each one to a ReplayLog.
+ */
+
+public class RecordingInput implements InputSource {
+    // instance variables
+    private InputSource input;
+    private ReplayLog.Writer log;
+
+    /**
+     * @param input Where the lines really come from.
+     * @param log Where each line is recorded.
+     */
+    public RecordingInput(InputSource input, ReplayLog.Writer log) {
+        this.input = input;
+        this.log = log;
+    }
+
+    public String nextLine() {
+        String line = input.nextLine();
+        if (line != null) {
+            try {
+                log.writeLine(line);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return line;
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The ReplayEngine plays recorded games (see ReplayLog) again with no window and no keyboard, as fast as the game can run.<p>
+ * A replay uses the recorded seed, world map and lines, so it goes exactly the way the recorded game did; if the final state hash
+ * doesn't match the recorded one, the game's rules have changed since the log was made.<p>
+ * Usage: ReplayEngine fileOrDirectory [turn]<br>
+ * Given a directory, every log in it is checked in parallel and the program exits with 1 if any of them fail.
+ * Given a file and a turn, the game is fast-forwarded to that turn and its state is printed.
+ */
+
+public class ReplayEngine {
+
+    /**
+     * Plays a recorded game, stopping after the given number of turns.
+     *
+     * @param log The recorded game.
+     * @param turnLimit The number of menu choices to play; Integer.MAX_VALUE plays the whole game.
+     * @return The game as it stands after the replay.
+     */
+    public static TreasureHunter replay(ReplayLog log, int turnLimit) {
+        TreasureHunter game = new TreasureHunter(new SplittableRandomSource(log.getSeed()), new ScriptedInput(log.getLines()));
+        if (log.getWorldTowns() > 0) {
+            // the same seed and size give the same map, so the game meets the same towns
+            game.setWorld(new WorldMap(log.getWorldSeed(), log.getWorldTowns()));
+        }
+        game.setTurnLimit(turnLimit);
+        game.play(NullDisplay.INSTANCE);
+        return game;
+    }
+
+    /**
+     * Plays a finished game all the way through and compares the result with the recording.
+     *
+     * @return null if the replay matches, otherwise a description of the difference.
+     */
+    public static String verify(ReplayLog log) {
+        if (!log.isFinished()) {
+            return "log has no end record";
+        }
+        TreasureHunter game = replay(log, Integer.MAX_VALUE);
+        long hash = GameSnapshot.of(game).hash();
+        if (game.getTurns() != log.getTurns()) {
+            return "ended after " + game.getTurns() + " turns, recorded " + log.getTurns();
+        }
+        if (hash != log.getStateHash()) {
+            return String.format("final state hash %08x, recorded %08x", hash, log.getStateHash());
+        }
+        return null;
+    }
+
+    /**
+     * Checks every log in a directory in parallel.
+     *
+     * @return The number of logs that failed.
+     */
+    public static long verifyAll(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.toString().endsWith(ReplayLog.EXTENSION)).sorted().collect(Collectors.toList());
+        }
+
+        long start = System.nanoTime();
+        List<String> failures = files.parallelStream()
+                .map(file -> {
+                    try {
+                        String problem = verify(ReplayLog.read(file));
+                        return problem == null ? null : file.getFileName() + ": " + problem;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (RuntimeException e) {
+                        return file.getFileName() + ": replay failed with " + e;
+                    }
+                })
+                .filter(problem -> problem != null)
+                .collect(Collectors.toList());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        for (String failure : failures) {
+            System.out.println("FAIL " + failure);
+        }
+        System.out.printf("%d logs replayed in %.2f s, %d failed%n", files.size(), seconds, failures.size());
+        return failures.size();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Path.of(args[0]);
+        if (Files.isDirectory(path)) {
+            System.exit(verifyAll(path) == 0 ? 0 : 1);
+        }
+
+        ReplayLog log = ReplayLog.read(path);
+        if (args.length > 1) {
+            TreasureHunter game = replay(log, Integer.parseInt(args[1]));
+            System.out.println("after turn " + game.getTurns() + ": " + game.getHunter());
+            System.out.println(game.getCurrentTown());
+        } else {
+            String problem = verify(log);
+            System.out.println(problem == null ? "OK" : "FAIL " + problem);
+            System.exit(problem == null ? 0 : 1);
+        }
+    }
+}
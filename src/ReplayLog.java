@@ -0,0 +1,175 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A ReplayLog is the record of one game: its seed, the world map it was played on if any, and every line the player
+ * typed, in order, ending with the number of turns played and a hash of the final state (see GameSnapshot.hash()).<p>
+ * With the seed, the map and the lines, ReplayEngine can play the game again exactly. The file is only ever appended to:
+ * <pre>
+ * int   magic "THRL"
+ * short format version
+ * long  seed
+ * int   number of towns on the world map, 0 outside world mode (not in version 1)
+ * long  seed of the world map (not in version 1)
+ * then any number of:
+ *   byte 'L', UTF line     one line of input
+ * and finally, if the game finished:
+ *   byte 'E', int turns, long state hash
+ * </pre>
+ * Version 1 logs, from before world mode, are still read, as games without a map.
+ */
+
+public class ReplayLog {
+    // constants
+    public static final String EXTENSION = ".thr";
+    private static final int MAGIC = 0x5448524C; // "THRL"
+    private static final short VERSION = 2;
+    private static final byte LINE = 'L';
+    private static final byte END = 'E';
+
+    // instance variables
+    private long seed;
+    private int worldTowns;
+    private long worldSeed;
+    private List<String> lines;
+    private boolean finished;
+    private int turns;
+    private long stateHash;
+
+    private ReplayLog(long seed, List<String> lines) {
+        this.seed = seed;
+        this.lines = lines;
+    }
+
+    /**
+     * Reads a log. A log cut off part way through (e.g. by a crash) is read up to its last whole line.
+     *
+     * @param file The log file.
+     * @return The log.
+     */
+    public static ReplayLog read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int magic = in.readInt();
+            short version = in.readShort();
+            if (magic != MAGIC || version < 1 || version > VERSION) {
+                throw new IOException(file + " is not a replay log this version can read");
+            }
+            ReplayLog log = new ReplayLog(in.readLong(), new ArrayList<>());
+            if (version > 1) {
+                log.worldTowns = in.readInt();
+                log.worldSeed = in.readLong();
+            }
+            try {
+                while (true) {
+                    byte tag = in.readByte();
+                    if (tag == LINE) {
+                        log.lines.add(in.readUTF());
+                    } else if (tag == END) {
+                        log.turns = in.readInt();
+                        log.stateHash = in.readLong();
+                        log.finished = true;
+                        break;
+                    } else {
+                        throw new IOException(file + " has an unknown record type " + tag);
+                    }
+                }
+            } catch (EOFException e) {
+                // the game was still running when the log was last written
+            }
+            log.lines = Collections.unmodifiableList(log.lines);
+            return log;
+        }
+    }
+
+    // accessors
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The number of towns on the world map the game was played on, or 0 if it wasn't played in world mode.
+     */
+    public int getWorldTowns() {
+        return worldTowns;
+    }
+
+    public long getWorldSeed() {
+        return worldSeed;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * @return true if the log has the end record with the final turn count and state hash.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public int getTurns() {
+        return turns;
+    }
+
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * Writes a log as a game is played.
+     */
+    public static class Writer implements Closeable {
+        private DataOutputStream out;
+
+        /**
+         * Creates the log file and writes its header.
+         *
+         * @param file The log file; an existing file is replaced.
+         * @param seed The seed of the game's RandomSource.
+         * @param world The world map the game is played on, or null outside world mode.
+         */
+        public Writer(Path file, long seed, WorldMap world) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(seed);
+            out.writeInt(world == null ? 0 : world.getTowns());
+            out.writeLong(world == null ? 0 : world.getSeed());
+            out.flush();
+        }
+
+        /**
+         * Appends one line of input. It is flushed straight away so a crash loses at most the line being written.
+         */
+        public void writeLine(String line) throws IOException {
+            out.writeByte(LINE);
+            out.writeUTF(line);
+            out.flush();
+        }
+
+        /**
+         * Appends the end record for a game that has finished.
+         */
+        public void finish(TreasureHunter game) throws IOException {
+            out.writeByte(END);
+            out.writeInt(game.getTurns());
+            out.writeLong(GameSnapshot.of(game).hash());
+            out.flush();
+        }
+
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An InputSource that plays back a fixed list of lines, so a game can be replayed from a script at full speed.
+ */
+
+public class ScriptedInput implements InputSource {
+    // instance variables
+    private List<String> lines;
+    private int next;
+
+    /**
+     * @param lines The lines to play back, in order.
+     */
+    public ScriptedInput(List<String> lines) {
+        this.lines = new ArrayList<>(lines);
+        next = 0;
+    }
+
+    /**
+     * Reads a script with one line of input per line of the file.
+     *
+     * @param file The script file.
+     * @return The input source.
+     */
+    public static ScriptedInput load(Path file) throws IOException {
+        return new ScriptedInput(Files.readAllLines(file));
+    }
+
+    public String nextLine() {
+        if (next == lines.size()) {
+            return null;
+        }
+        return lines.get(next++);
+    }
+
+    /**
+     * @return The number of lines not played back yet.
+     */
+    public int remaining() {
+        return lines.size() - next;
+    }
+}
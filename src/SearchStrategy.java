@@ -0,0 +1,31 @@
+/**
+ * A Strategy that takes the action a HintSearch rates best on every turn, so a bot plays the same hints a player can ask for.<p>
+ * Each turn costs the search's whole time budget. It keeps a seed between calls, so each thread needs its own SearchStrategy.
+ */
+
+public class SearchStrategy implements Strategy {
+    // instance variables
+    private HintSearch search;
+    private long seed;
+
+    /**
+     * @param search The search run on every turn.
+     * @param seed The seed for the first search; each turn after it uses the next one.
+     */
+    public SearchStrategy(HintSearch search, long seed) {
+        this.search = search;
+        this.seed = seed;
+    }
+
+    public String nextMove(Hunter hunter, Town town) {
+        return search.search(hunter, town, seed++).getBestAction();
+    }
+
+    public String itemToBuy(Hunter hunter, Town town) {
+        return town.getTerrain().getNeededItem();
+    }
+
+    public String itemToSell(Hunter hunter, Town town) {
+        return null;
+    }
+}
@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Checks that a live session survives a server restart through its checkpoints, and prints OK or FAIL.<p>
+ * A player plays a few turns on a GameServer in the shared world, and the snapshot file is copied once the periodic
+ * checkpoint has saved the game, as a crash would leave it. A second server is started on the copy, on a map made
+ * from the same seed, and the player connects again under the same name and carries on: the game must be where it was,
+ * with its turns counting on from the saved number, and its slot must be emptied once the player exits.<p>
+ * Usage: ServerRestartCheck
+ */
+
+public class ServerRestartCheck {
+    // constants
+    private static final long WORLD_SEED = 42;
+    private static final int WORLD_TOWNS = 100;
+    private static final int SLOTS = 8;
+    private static final long CHECKPOINT_MILLIS = 100;
+    private static final String NAME = "alice";
+    private static final String[] MOVES = {"b", "water", "y", "h", "d", "l"};
+    private static final int TURNS = 4; // buying takes one turn, however many questions the shop asks
+    private static final String MENU_PROMPT = "What's your next move? ";
+    private static final String STATUS_START = "***";
+    private static final String STATUS_END = "\n(B)uy";
+
+    public static void main(String[] args) throws Exception {
+        String problem = check();
+        System.out.println(problem == null ? "OK" : "FAIL " + problem);
+        System.exit(problem == null ? 0 : 1);
+    }
+
+    /**
+     * @return What went wrong, or null if nothing did.
+     */
+    private static String check() throws Exception {
+        Path file = Files.createTempFile("snapshots", ".thsf");
+        Path crashed = Files.createTempFile("snapshots-crashed", ".thsf");
+        try {
+            // the first run: play some turns and let a checkpoint save them
+            String before;
+            SnapshotFile snapshots = new SnapshotFile(file, SLOTS);
+            GameServer server = startServer(snapshots);
+            try (Socket socket = connect(server)) {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                send(out, NAME, "e");
+                before = readUntil(in, MENU_PROMPT);
+                for (String move : MOVES) {
+                    send(out, move);
+                }
+                for (int turn = 0; turn < TURNS; turn++) {
+                    before = readUntil(in, MENU_PROMPT);
+                }
+                if (before == null) {
+                    return "the first server hung up";
+                }
+                Thread.sleep(3 * CHECKPOINT_MILLIS);
+                Files.copy(file, crashed, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                server.stop();
+                snapshots.close();
+            }
+
+            try (SnapshotFile copy = new SnapshotFile(crashed, SLOTS)) {
+                GameSnapshot saved = find(copy);
+                if (saved == null) {
+                    return "no game was checkpointed";
+                }
+                if (!saved.getPlayerName().equals(NAME) || saved.getTurns() != TURNS || saved.getWorldSeed() != WORLD_SEED
+                        || saved.getWorldTowns() != WORLD_TOWNS || !saved.isSharedWorld()) {
+                    return "the checkpoint saved " + saved.getPlayerName() + " after " + saved.getTurns() + " turns on map "
+                            + saved.getWorldSeed() + "/" + saved.getWorldTowns();
+                }
+            }
+
+            // the second run, on what the first left behind: carry on, then exit
+            snapshots = new SnapshotFile(crashed, SLOTS);
+            server = startServer(snapshots);
+            try (Socket socket = connect(server)) {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                send(out, NAME);
+                if (readUntil(in, "(y/n): ") == null) {
+                    return "the saved game wasn't offered";
+                }
+                send(out, "y");
+                String after = readUntil(in, MENU_PROMPT);
+                if (after == null || !status(after).equals(status(before))) {
+                    return "the game carried on as\n" + (after == null ? "nothing" : status(after)) + "\ninstead of\n" + status(before);
+                }
+                send(out, "h");
+                readUntil(in, MENU_PROMPT);
+                Thread.sleep(3 * CHECKPOINT_MILLIS);
+                GameSnapshot saved = find(snapshots);
+                if (saved == null || saved.getTurns() != TURNS + 1) {
+                    return "the carried-on game was checkpointed after " + (saved == null ? "no" : saved.getTurns()) + " turns";
+                }
+                send(out, "x");
+                readUntil(in, "\u0000"); // everything until the server hangs up
+            } finally {
+                server.stop();
+            }
+            GameSnapshot left = find(snapshots);
+            snapshots.close();
+            return left == null ? null : "the finished game was left in its slot";
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(crashed);
+        }
+    }
+
+    private static GameServer startServer(SnapshotFile snapshots) throws IOException {
+        GameServer server = new GameServer(0);
+        server.setSharedWorld(new WorldMap(WORLD_SEED, WORLD_TOWNS));
+        server.startCheckpoints(snapshots, CHECKPOINT_MILLIS);
+        return server;
+    }
+
+    private static Socket connect(GameServer server) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    /**
+     * @return The first game saved in the file, or null if every slot is empty.
+     */
+    private static GameSnapshot find(SnapshotFile snapshots) {
+        for (int slot = 0; slot < snapshots.getSlots(); slot++) {
+            GameSnapshot saved = snapshots.load(slot);
+            if (saved != null) {
+                return saved;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The hunter and the town, as shown above the menu.
+     */
+    private static String status(String screen) {
+        int start = screen.lastIndexOf(STATUS_START);
+        int end = screen.lastIndexOf(STATUS_END);
+        return start < 0 || end < start ? screen : screen.substring(start, end);
+    }
+
+    private static void send(OutputStream out, String... lines) throws IOException {
+        for (String line : lines) {
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads until the text received ends with the given prompt.
+     *
+     * @return The text, or null if the server closed the connection first.
+     */
+    private static String readUntil(InputStream in, String prompt) throws IOException {
+        StringBuilder text = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            text.append((char) b);
+            if (text.length() >= prompt.length() && text.lastIndexOf(prompt) == text.length() - prompt.length()) {
+                return text.toString();
+            }
+        }
+        return null;
+    }
+}
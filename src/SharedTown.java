@@ -0,0 +1,143 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A SharedTown is a town of the shared-world mode, where any number of hunters, each played on its own thread,
+ * can be in the same town at once.<p>
+ * It only holds what the hunters share. Each hunter still plays the town through a Town of their own (see Town.enter()),
+ * so the rules, messages, metrics and events are the usual ones; the Town asks its SharedTown for the claims instead
+ * of keeping its own searched and dug flags.<p>
+ * The town's terrain, toughness and treasure never change, so every hunter reads them freely. The only things hunters
+ * race for are searching the town and digging it, which are first-come claims: each is one bit in an atomic int,
+ * set with a compare-and-set, so exactly one hunter wins each claim and nobody ever waits on a lock.
+ * A claim already taken is seen with a plain read, without writing to the shared int again.
+ * Who is in town is counted in a LongAdder, whose cells spread the updates from different threads.
+ */
+
+public class SharedTown {
+    // constants
+    private static final int SEARCHED = 1;
+    private static final int DUG = 2;
+
+    // claims that arrived after another hunter had taken them, across every shared town (see Metrics)
+    private static final LongAdder HUNTS_LOST = Metrics.counter("town.shared.huntLost");
+    private static final LongAdder DIGS_LOST = Metrics.counter("town.shared.digLost");
+
+    // instance variables
+    private final int terrainId;
+    private final boolean toughTown;
+    private final String treasure;
+    private final AtomicInteger claims = new AtomicInteger(); // SEARCHED and DUG
+    private final LongAdder hunters = new LongAdder();
+
+    /**
+     * @param terrainId The id of the surrounding terrain.
+     * @param toughTown Whether the town is a tough town.
+     * @param treasure The treasure hidden in the town.
+     */
+    public SharedTown(int terrainId, boolean toughTown, String treasure) {
+        this.terrainId = terrainId;
+        this.toughTown = toughTown;
+        this.treasure = treasure;
+    }
+
+    /**
+     * Rolls a new town, with the same rolls in the same order as a new Town.
+     *
+     * @param difficulty The difficulty, whose toughness decides whether the town is tough.
+     * @param random The RandomSource for the rolls.
+     */
+    public static SharedTown roll(DifficultyProfile difficulty, RandomSource random) {
+        int terrainId = Town.rollTerrainId(random);
+        String treasure = TreasureHunter.TREASURES[(int) (random.nextDouble() * TreasureHunter.TREASURES.length)];
+        boolean toughTown = random.nextDouble() < difficulty.getToughness();
+        return new SharedTown(terrainId, toughTown, treasure);
+    }
+
+    // accessors
+    public int getTerrainId() {
+        return terrainId;
+    }
+
+    public boolean isToughTown() {
+        return toughTown;
+    }
+
+    public String getTreasure() {
+        return treasure;
+    }
+
+    public boolean hasBeenSearched() {
+        return (claims.get() & SEARCHED) != 0;
+    }
+
+    public boolean hasBeenDug() {
+        return (claims.get() & DUG) != 0;
+    }
+
+    /**
+     * @return The number of hunters in town right now; only exact when nobody is arriving or leaving.
+     */
+    public long getHunters() {
+        return hunters.sum();
+    }
+
+    void hunterArrives() {
+        hunters.increment();
+    }
+
+    /**
+     * Called when a hunter moves on, and when a player in town quits or is disconnected.
+     */
+    void hunterLeaves() {
+        hunters.decrement();
+    }
+
+    /**
+     * The first hunter to search the town gets its treasure; everyone after finds it already searched.
+     *
+     * @return true if the calling hunter is the one who searches it.
+     */
+    boolean claimSearch() {
+        if (claim(SEARCHED)) {
+            return true;
+        }
+        HUNTS_LOST.increment();
+        return false;
+    }
+
+    /**
+     * The first hunter with a shovel to dig the town gets whatever is there.
+     *
+     * @return true if the calling hunter is the one who digs it.
+     */
+    boolean claimDig() {
+        if (claim(DUG)) {
+            return true;
+        }
+        DIGS_LOST.increment();
+        return false;
+    }
+
+    /**
+     * Takes one of the claims for the calling hunter.
+     *
+     * @return true if nobody had taken it before.
+     */
+    private boolean claim(int bit) {
+        int current = claims.get();
+        while ((current & bit) == 0) {
+            if (claims.compareAndSet(current, current | bit)) {
+                return true;
+            }
+            // the other claim changed, or someone took this one: look again
+            current = claims.get();
+        }
+        return false;
+    }
+
+    public String toString() {
+        return Town.TERRAIN_NAMES[terrainId] + (toughTown ? ", tough" : ", mild") + (hasBeenSearched() ? ", searched" : "")
+                + (hasBeenDug() ? ", dug" : "") + ", " + getHunters() + " hunters";
+    }
+}
@@ -1,4 +1,7 @@
-import java.util.Scanner;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The Shop class controls the cost of the items in the Treasure Hunt game. <p>
@@ -17,75 +20,184 @@ public class Shop {
     private static final int SHOVEL_COST = 8;
     private static final int SWORD_COST = 0;
 
+    /** The items every shop sells unless it is given another catalog. */
+    public static final ItemCatalog DEFAULT_CATALOG = new ItemCatalog(List.of(
+            new ItemCatalog.Entry("water", WATER_COST, false),
+            new ItemCatalog.Entry("rope", ROPE_COST, false),
+            new ItemCatalog.Entry("machete", MACHETE_COST, false),
+            new ItemCatalog.Entry("horse", HORSE_COST, false),
+            new ItemCatalog.Entry("boat", BOAT_COST, false),
+            new ItemCatalog.Entry("boots", BOOTS_COST, false),
+            new ItemCatalog.Entry("shovel", SHOVEL_COST, false),
+            new ItemCatalog.Entry("sword", SWORD_COST, true)));
 
     // static variables
-    private static final Scanner SCANNER = new Scanner(System.in);
+    private static final Map<DifficultyProfile, Shop> SHARED = new ConcurrentHashMap<>();
+    private static final LongAdder BUYS = Metrics.counter("shop.buy.count");
+    private static final LongAdder BUY_GOLD = Metrics.counter("shop.buy.gold");
+    private static final LongAdder SELLS = Metrics.counter("shop.sell.count");
+    private static final LongAdder SELL_GOLD = Metrics.counter("shop.sell.gold");
 
     // instance variables
     private double markdown;
-    private String mode;
-    private Hunter customer;
+    private DifficultyProfile difficulty;
+    private int[] buyPrices;  // indexed by item id
+    private int[] sellPrices; // indexed by item id, with the markdown already applied
+    private String inventoryText;
+    private Display display;
+    private InputSource input;
+    private Market market; // null unless prices follow a Market
+    // the dialogue with the player in the shop, between open() and the last answer()
+    private boolean buying;
+    private String item; // null until the player has said which item
+    private int quote;
 
     /**
-     * The Shop constructor takes in a markdown value and leaves customer null until one enters the shop.
+     * The Shop constructor takes in the difficulty, whose markdown is used for selling items.<p>
+     * A shop made this way doesn't show any dialogue; use the other constructor for a shop a player walks into.
      *
-     * @param markdown Percentage of markdown for selling items in decimal format.
+     * @param difficulty The difficulty mode, which decides the markdown and whether the sword is for sale.
      */
-    public Shop(double markdown, String mode) {
+    public Shop(DifficultyProfile difficulty) {
+        this(difficulty, DEFAULT_CATALOG, NullDisplay.INSTANCE, new ScriptedInput(List.of()));
+    }
+
+    /**
+     * Same as the other constructor, but sells the items in the given catalog and talks to the player through the given Display and InputSource.
+     * Buy and sell prices are worked out here once, so looking up a price later is just an array read.
+     *
+     * @param catalog The items this shop sells.
+     * @param display Where the shop's dialogue is shown.
+     * @param input Where the player's answers come from; the same source the rest of the game reads.
+     */
+    public Shop(DifficultyProfile difficulty, ItemCatalog catalog, Display display, InputSource input) {
+        this(difficulty, difficulty.getMarkdown(), catalog, display, input);
+    }
+
+    /**
+     * Same as the other constructor, with a markdown other than the mode's, e.g. the one saved with a game (see GameSnapshot).
+     *
+     * @param markdown The part of an item's cost the shop pays when buying it back.
+     */
+    public Shop(DifficultyProfile difficulty, double markdown, ItemCatalog catalog, Display display, InputSource input) {
+        this.display = display;
+        this.input = input;
+        this.difficulty = difficulty;
         this.markdown = markdown;
-        this.mode = mode;
-        customer = null; // is set in the enter method
+
+        buyPrices = new int[Items.MAX_ITEMS];
+        sellPrices = new int[Items.MAX_ITEMS];
+        for (ItemCatalog.Entry entry : catalog.getEntries()) {
+            buyPrices[entry.getId()] = entry.getCost();
+            sellPrices[entry.getId()] = (int) (entry.getCost() * markdown);
+        }
+        inventoryText = catalog.getInventoryText(difficulty.isSwordForSale());
     }
 
     /**
-     * Method for entering the shop.
+     * A shop without dialogue keeps nothing about its customers, so one per difficulty is shared by every headless game
+     * (simulations, solvers) instead of each game or move making its own.
+     *
+     * @param difficulty The difficulty mode.
+     * @return The shared shop for that mode.
+     */
+    public static Shop shared(DifficultyProfile difficulty) {
+        return SHARED.computeIfAbsent(difficulty, Shop::new);
+    }
+
+    /**
+     * Has the shop charge the market's prices instead of its catalog's, and count its trades on the market.
+     * Buyback is still the market price with the markdown taken off.
+     *
+     * @param market The market, usually shared by many shops; null to go back to the catalog's prices.
+     */
+    public void setMarket(Market market) {
+        this.market = market;
+    }
+
+    public Market getMarket() {
+        return market;
+    }
+
+    // accessors
+    public double getMarkdown() {
+        return markdown;
+    }
+
+    public DifficultyProfile getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Method for entering the shop: the whole dialogue, reading each answer from the shop's InputSource.
      *
      * @param hunter the Hunter entering the shop
      * @param buyOrSell String that determines if hunter is "B"uying or "S"elling
      */
     public void enter(Hunter hunter, String buyOrSell) {
-        customer = hunter;
-
-        if (buyOrSell.equals("b")) {
-            System.out.println("Welcome to the shop! We have the finest wares in town.");
-            System.out.println("Currently we have the following items:");
-            System.out.println(inventory());
-            System.out.print("What're you lookin' to buy? ");
-            String item = SCANNER.nextLine().toLowerCase();
-            int cost = checkMarketPrice(item, true);
-            if (cost == 0 && !(item.equals("sword"))) {
-                System.out.println("We ain't got none of those.");
+        open(hunter, buyOrSell);
+        while (answer(hunter, input.nextLine())) {
+        }
+    }
+
+    /**
+     * Starts the shop's dialogue and asks the first question. The player's answers are then handed to answer() one at a time,
+     * whenever they arrive, so nothing waits for the player in between.
+     *
+     * @param hunter the Hunter entering the shop
+     * @param buyOrSell String that determines if hunter is "B"uying or "S"elling
+     */
+    public void open(Hunter hunter, String buyOrSell) {
+        buying = buyOrSell.equals("b");
+        item = null;
+        if (buying) {
+            display.println("Welcome to the shop! We have the finest wares in town.");
+            display.println("Currently we have the following items:");
+            display.println(inventory());
+            display.print("What're you lookin' to buy? ");
+        } else {
+            display.println("What're you lookin' to sell? ");
+            display.print("You currently have the following items: " + hunter.getInventory());
+        }
+        display.flush();
+    }
+
+    /**
+     * Takes the player's next answer in the dialogue started by open(): first the item, then whether to take the price.
+     *
+     * @param hunter the Hunter in the shop
+     * @param line The answer; null, for a player with no more input, counts as an empty answer.
+     * @return true if the shop has asked another question, false once the hunter has left the shop.
+     */
+    public boolean answer(Hunter hunter, String line) {
+        String answer = line == null ? "" : line.toLowerCase();
+        if (item == null) {
+            item = answer;
+            quote = checkMarketPrice(item, buying);
+            if (buying && !sells(Items.find(item), quote)) {
+                display.println("We ain't got none of those.");
+            } else if (buying && hunter.hasItemInKit("sword")) {
+                display.println(textColor.RED_BOLD_BRIGHT + "PlEASE... I just want to live, just.. just take it" +
+                        ".");
+                display.println("You Obtained... " + textColor.PURPLE_BOLD_BRIGHT + item + textColor.RESET);
+                buy(hunter, item, quote, true);
+            } else if (!buying && quote == 0) {
+                display.println("We don't want none of those.");
             } else {
-                if (customer.hasItemInKit("sword")) {
-                    System.out.println(textColor.RED_BOLD_BRIGHT + "PlEASE... I just want to live, just.. just take it" +
-                            ".");
-                    System.out.println("You Obtained... " + textColor.PURPLE_BOLD_BRIGHT + item + textColor.RESET);
-                        hunter.addItem(item);
-                } else {
-                    System.out.print("It'll cost you " + cost + " gold. Buy it (y/n)? ");
-                    String option = SCANNER.nextLine().toLowerCase();
-
-                    if (option.equals("y")) {
-                        buyItem(item);
-                    }
-                }
+                display.print((buying ? "It'll cost you " : "It'll get you ") + quote + " gold. " + (buying ? "Buy" : "Sell") + " it (y/n)? ");
+                display.flush();
+                return true;
             }
-        } else {
-            System.out.println("What're you lookin' to sell? ");
-            System.out.print("You currently have the following items: " + customer.getInventory());
-            String item = SCANNER.nextLine().toLowerCase();
-            int cost = checkMarketPrice(item, false);
-            if (cost == 0) {
-                System.out.println("We don't want none of those.");
+        } else if (answer.equals("y")) {
+            // charged what was quoted, even if the market has moved since
+            if (buying) {
+                buyItem(hunter, item, quote);
             } else {
-                System.out.print("It'll get you " + cost + " gold. Sell it (y/n)? ");
-                String option = SCANNER.nextLine().toLowerCase();
-
-                if (option.equals("y")) {
-                    sellItem(item);
-                }
+                sellItem(hunter, item, quote);
             }
         }
+        item = null;
+        return false;
     }
 
     /**
@@ -95,45 +207,175 @@ public class Shop {
      * @return the string representing the shop's items available for purchase and their prices.
      */
     public String inventory() {
-        String str = textColor.PURPLE_BRIGHT + "Water: " + WATER_COST + textColor.YELLOW_BOLD_BRIGHT +" gold\n" + textColor.RESET;
-        str += textColor.PURPLE_BRIGHT +"Rope: " + ROPE_COST  + textColor.YELLOW_BOLD_BRIGHT +" gold\n" + textColor.RESET;
-        str += textColor.PURPLE_BRIGHT +"Machete: " + MACHETE_COST + textColor.YELLOW_BOLD_BRIGHT +" gold\n" + textColor.RESET;
-        str += textColor.PURPLE_BRIGHT +"Horse: " + HORSE_COST + textColor.YELLOW_BOLD_BRIGHT +" gold\n" + textColor.RESET;
-        str += textColor.PURPLE_BRIGHT +"Boat: " + BOAT_COST + textColor.YELLOW_BOLD_BRIGHT +" gold\n" + textColor.RESET;
-        str += textColor.PURPLE_BRIGHT +"Boots: " + BOOTS_COST + textColor.YELLOW_BOLD_BRIGHT +" gold\n" + textColor.RESET;
-        str += textColor.PURPLE_BRIGHT +"Shovel: " + SHOVEL_COST + textColor.YELLOW_BOLD_BRIGHT +" gold\n" + textColor.RESET;
-        if (mode.equals("s")){
-            str += textColor.RED_BOLD_BRIGHT +"Sword: " + SWORD_COST + textColor.YELLOW_BOLD_BRIGHT +" gold\n" + textColor.RESET;
+        if (market != null) {
+            return market.getPrices().getInventoryText(difficulty.isSwordForSale());
         }
-
-        return str;
+        return inventoryText;
     }
 
     /**
      * A method that lets the customer (a Hunter) buy an item.
      *
+     * @param customer The Hunter buying the item.
      * @param item The item being bought.
      */
-    public void buyItem(String item) {
-        int costOfItem = checkMarketPrice(item, true);
-        if (customer.buyItem(item, costOfItem) && !(customer.hasItemInKit("sword"))) {
-            System.out.println("Ye' got yerself a " + textColor.PURPLE_BOLD_BRIGHT + item + textColor.RESET + ". Come again soon.");
+    public void buyItem(Hunter customer, String item) {
+        buyItem(customer, item, checkMarketPrice(item, true));
+    }
+
+    private void buyItem(Hunter customer, String item, int costOfItem) {
+        boolean bought = buy(customer, item, costOfItem, true);
+        if (bought && !(customer.hasItemInKit("sword"))) {
+            display.println("Ye' got yerself a " + textColor.PURPLE_BOLD_BRIGHT + item + textColor.RESET + ". Come again soon.");
         } else if (!(item.equals("sword"))){
-                System.out.println("Hmm, either you don't have enough gold or you've already got one of those!");
+                display.println("Hmm, either you don't have enough gold or you've already got one of those!");
             }
         }
 
     /**
      * A pathway method that lets the Hunter sell an item.
      *
+     * @param customer The Hunter selling the item.
      * @param item The item being sold.
      */
-    public void sellItem(String item) {
-        int buyBackPrice = checkMarketPrice(item, false);
-        if (customer.sellItem(item, buyBackPrice)) {
-            System.out.println("Pleasure doin' business with you.");
+    public void sellItem(Hunter customer, String item) {
+        sellItem(customer, item, checkMarketPrice(item, false));
+    }
+
+    private void sellItem(Hunter customer, String item, int buyBackPrice) {
+        if (sell(customer, item, buyBackPrice, true)) {
+            display.println("Pleasure doin' business with you.");
         } else {
-            System.out.println("Stop stringin' me along!");
+            display.println("Stop stringin' me along!");
+        }
+    }
+
+    /**
+     * Buys an item at the current price without any dialogue, for games that trade without walking into a shop
+     * (see Simulation). enter() follows the same rules.
+     *
+     * @param hunter The Hunter buying the item.
+     * @param item The item being bought.
+     * @return true if the hunter paid for the item or was handed it.
+     */
+    public boolean buy(Hunter hunter, String item) {
+        return buy(hunter, item, getCostOfItem(item), true);
+    }
+
+    /**
+     * Same as buy(Hunter, String), optionally leaving the trade out of the shop metrics and the market.
+     *
+     * @param counted false for trades that didn't really happen, such as those in a hint's rollouts (see HintSearch).
+     */
+    public boolean buy(Hunter hunter, String item, boolean counted) {
+        return buy(hunter, item, getCostOfItem(item), counted);
+    }
+
+    /**
+     * Buys an item at a price already quoted.
+     */
+    private boolean buy(Hunter hunter, String item, int cost, boolean counted) {
+        int id = Items.find(item);
+        int paid = charge(hunter.getKitMask(), hunter.getGold(), id, cost);
+        if (paid < 0) {
+            return false;
+        }
+        if (hunter.hasItemInKit(Items.SWORD)) {
+            // the shopkeeper hands it over, so there's no sale to count
+            return hunter.addItem(id);
+        }
+        hunter.changeGold(-paid);
+        hunter.addItem(id);
+        if (counted) {
+            recordBuy(id, paid);
+        }
+        return true;
+    }
+
+    /**
+     * The rules for buying, on a hunter's kit and gold: a hunter with the sword is handed anything the shop sells,
+     * anyone else pays for it if they can afford it and don't have one yet. A hunter whose kit is full still pays.
+     * Both buy() and HunterPopulation, which keeps its hunters as arrays, go by this.
+     *
+     * @param kit The hunter's kit, as a mask of item ids.
+     * @param gold The hunter's gold.
+     * @param itemId The id of the item, or -1 for a name the game doesn't know.
+     * @param cost The price quoted.
+     * @return The gold the hunter pays (0 when handed the item), or -1 if they don't get it.
+     */
+    int charge(long kit, int gold, int itemId, int cost) {
+        if (!sells(itemId, cost)) {
+            return -1;
+        }
+        if ((kit & (1L << Items.SWORD)) != 0) {
+            return 0;
+        }
+        if (gold < cost || (kit & (1L << itemId)) != 0) {
+            return -1;
+        }
+        return cost;
+    }
+
+    /**
+     * @return true if the shop has the item at that price; the sword is free in the modes that sell it.
+     */
+    private boolean sells(int itemId, int cost) {
+        return cost != 0 || (itemId == Items.SWORD && difficulty.isSwordForSale());
+    }
+
+    /**
+     * Sells an item back at the current price without any dialogue.
+     *
+     * @param hunter The Hunter selling the item.
+     * @param item The item being sold.
+     * @return true if the hunter had the item and was paid for it.
+     */
+    public boolean sell(Hunter hunter, String item) {
+        return sell(hunter, item, getBuyBackCost(item), true);
+    }
+
+    /**
+     * Same as sell(Hunter, String), optionally leaving the trade out of the shop metrics and the market.
+     *
+     * @param counted false for trades that didn't really happen.
+     */
+    public boolean sell(Hunter hunter, String item, boolean counted) {
+        return sell(hunter, item, getBuyBackCost(item), counted);
+    }
+
+    private boolean sell(Hunter hunter, String item, int cost, boolean counted) {
+        if (!hunter.sellItem(item, cost)) {
+            return false;
+        }
+        if (counted) {
+            recordSell(Items.find(item), cost);
+        }
+        return true;
+    }
+
+    /**
+     * Counts a sale in the shop metrics and on the market.
+     *
+     * @param gold The gold the hunter paid.
+     */
+    private void recordBuy(int itemId, int gold) {
+        BUYS.increment();
+        BUY_GOLD.add(gold);
+        if (market != null) {
+            market.recordBuy(itemId);
+        }
+    }
+
+    /**
+     * Counts an item sold back to the shop in the shop metrics and on the market.
+     *
+     * @param gold The gold the hunter got.
+     */
+    private void recordSell(int itemId, int gold) {
+        SELLS.increment();
+        SELL_GOLD.add(gold);
+        if (market != null) {
+            market.recordSell(itemId);
         }
     }
 
@@ -153,39 +395,30 @@ public class Shop {
     }
 
     /**
-     * Checks the item entered against the costs listed in the static variables.
+     * Looks up the cost of the item entered in the shop's price table.
      *
      * @param item The item being checked for cost.
      * @return The cost of the item or 0 if the item is not found.
      */
     public int getCostOfItem(String item) {
-        if (item.equals("water")) {
-            return WATER_COST;
-        } else if (item.equals("rope")) {
-            return ROPE_COST;
-        } else if (item.equals("machete")) {
-            return MACHETE_COST;
-        } else if (item.equals("horse")) {
-            return HORSE_COST;
-        } else if (item.equals("boat")) {
-            return BOAT_COST;
-        } else if (item.equals("boots")) {
-            return BOOTS_COST;
-        } else if (item.equals("shovel")) {
-            return SHOVEL_COST;
-        } else {
+        int id = Items.find(item);
+        if (id < 0) {
             return 0;
         }
+        return market == null ? buyPrices[id] : market.getPrices().getCost(id);
     }
 
     /**
-     * Checks the cost of an item and applies the markdown.
+     * Looks up the cost of an item with the markdown already applied.
      *
      * @param item The item being sold.
      * @return The sell price of the item.
      */
     public int getBuyBackCost(String item) {
-        int cost = (int) (getCostOfItem(item) * markdown);
-        return cost;
+        int id = Items.find(item);
+        if (id < 0) {
+            return 0;
+        }
+        return market == null ? sellPrices[id] : (int) (market.getPrices().getCost(id) * markdown);
     }
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+/**
+ * The Simulation class plays a whole game of Treasure Hunter without a window or a keyboard.<p>
+ * The choices come from a Strategy and the rules come from the same Town, Shop and Hunter classes the real game uses,
+ * so a simulated game plays out exactly like one typed in by a player would.
+ */
+
+public class Simulation {
+    // instance variables
+    private DifficultyProfile difficulty;
+    private Shop shop;
+    private Strategy strategy;
+    private int maxTurns;
+    private boolean counted = true;
+
+    /**
+     * @param difficulty The difficulty mode.
+     * @param strategy The Strategy making the player's choices.
+     * @param maxTurns The number of turns after which a game is given up.
+     */
+    public Simulation(DifficultyProfile difficulty, Strategy strategy, int maxTurns) {
+        this.difficulty = difficulty;
+        shop = Shop.shared(difficulty);
+        this.strategy = strategy;
+        this.maxTurns = maxTurns;
+    }
+
+    public DifficultyProfile getDifficulty() {
+        return difficulty;
+    }
+
+    public int getMaxTurns() {
+        return maxTurns;
+    }
+
+    /**
+     * Leaves this simulation's trades out of the shop metrics, for games that are only played out to look ahead
+     * (see HintSearch); play them in forked towns (see Town.fork()) so the towns' outcomes aren't counted either.
+     *
+     * @param counted false to count nothing.
+     */
+    public void setCounted(boolean counted) {
+        this.counted = counted;
+    }
+
+    /**
+     * Plays one game and adds its outcome to the result.
+     *
+     * @param seed The seed for every roll in the game; the same seed always plays out the same way.
+     * @param result Where the outcome of the game is recorded.
+     */
+    public void play(long seed, SimulationResult result) {
+        play(new SplittableRandomSource(seed), result);
+    }
+
+    /**
+     * Plays one game and adds its outcome to the result.
+     *
+     * @param random The RandomSource for every roll in the game; it should not be shared with another thread.
+     * @param result Where the outcome of the game is recorded.
+     */
+    public void play(RandomSource random, SimulationResult result) {
+        play(random, result, null);
+    }
+
+    /**
+     * Plays one game and adds its outcome to the result, and its turn-by-turn detail to the stats.
+     *
+     * @param random The RandomSource for every roll in the game; it should not be shared with another thread.
+     * @param result Where the outcome of the game is recorded.
+     * @param stats Where the gold on every turn and the town's events are counted, or null to skip them.
+     */
+    public void play(RandomSource random, SimulationResult result, SimulationStats stats) {
+        Hunter hunter = newHunter();
+        Town town = new Town(shop, difficulty, TreasureHunter.TREASURES, random);
+        town.setEventSink(stats);
+        town.hunterArrives(hunter);
+
+        String[] treasures = TreasureHunter.TREASURES;
+        boolean[] found = new boolean[treasures.length];
+        int turn = 0;
+        boolean quit = false;
+        while (turn < maxTurns && !quit && !hunter.hasAllTreasure()) {
+            quit = takeTurn(hunter, town, strategy.nextMove(hunter, town));
+
+            result.recordTurn(turn, hunter.getGold());
+            if (stats != null) {
+                stats.recordTurn(turn, hunter.getGold());
+            }
+            for (int i = 0; i < treasures.length; i++) {
+                if (!found[i] && hunter.hasItemInTreasure(treasures[i])) {
+                    found[i] = true;
+                    result.recordTreasure(i, turn);
+                }
+            }
+            turn++;
+        }
+        result.recordGame(hunter.hasAllTreasure(), turn, hunter.getGold());
+        if (stats != null) {
+            stats.recordGame(hunter.hasAllTreasure(), turn, hunter.getGold());
+        }
+    }
+
+    /**
+     * Plays on from a position in a game already under way, with this Simulation's strategy, and records nothing.
+     * The hunter and town are played with directly, so pass forks (see Hunter.fork() and Town.fork()) to keep the originals.
+     *
+     * @param hunter The hunter.
+     * @param town The town the hunter is in.
+     * @param turns The most turns to play.
+     * @return true if the hunter had every treasure by the end.
+     */
+    public boolean playOut(Hunter hunter, Town town, int turns) {
+        for (int turn = 0; turn < turns && !hunter.hasAllTreasure(); turn++) {
+            if (takeTurn(hunter, town, strategy.nextMove(hunter, town))) {
+                break;
+            }
+        }
+        return hunter.hasAllTreasure();
+    }
+
+    /**
+     * Carries out one menu choice, with the shop's questions answered by the strategy.
+     *
+     * @param choice One of the menu letters.
+     * @return true if the choice was to e(x)it.
+     */
+    boolean takeTurn(Hunter hunter, Town town, String choice) {
+        if (choice.equals("b")) {
+            buy(hunter, shop, strategy.itemToBuy(hunter, town));
+        } else if (choice.equals("s")) {
+            sell(hunter, shop, strategy.itemToSell(hunter, town));
+        } else if (choice.equals("m")) {
+            if (town.leaveTown()) {
+                // one Town per game, turned into the next town on every move
+                town.reset();
+                town.hunterArrives(hunter);
+            }
+        } else if (choice.equals("l")) {
+            town.lookForTrouble();
+        } else if (choice.equals("h")) {
+            town.huntForTreasure();
+        } else if (choice.equals("d")) {
+            town.digForGold();
+        } else if (choice.equals("x")) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Creates the hunter the same way TreasureHunter.welcomePlayer() does for the mode.
+     */
+    private Hunter newHunter() {
+        return difficulty.newHunter("sim");
+    }
+
+    /**
+     * Buys without printing or prompting, by the same rules as Shop.enter().
+     */
+    private void buy(Hunter hunter, Shop shop, String item) {
+        if (item != null) {
+            shop.buy(hunter, item, counted);
+        }
+    }
+
+    /**
+     * Sells without printing or prompting, by the same rules as Shop.enter().
+     */
+    private void sell(Hunter hunter, Shop shop, String item) {
+        if (item != null) {
+            shop.sell(hunter, item, counted);
+        }
+    }
+}
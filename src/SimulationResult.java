@@ -0,0 +1,178 @@
+/**
+ * The SimulationResult class adds up the outcome of many simulated games.<p>
+ * Results from different threads are combined with merge(), so the totals don't depend on how the games were split up.
+ */
+
+public class SimulationResult {
+    // instance variables
+    private long games;
+    private long wins;
+    private long totalTurns;
+    private long totalFinalGold;
+    private long elapsedNanos;
+    private int threads;
+    private long[] goldSum;     // total gold of all games still running, per turn
+    private long[] goldSamples; // number of games still running, per turn
+    private long[] treasureTurnSum;
+    private long[] treasureFound;
+    private SimulationStats stats; // only when the run collected them
+
+    /**
+     * @param maxTurns The longest game that will be recorded.
+     */
+    public SimulationResult(int maxTurns) {
+        goldSum = new long[maxTurns];
+        goldSamples = new long[maxTurns];
+        treasureTurnSum = new long[TreasureHunter.TREASURES.length];
+        treasureFound = new long[TreasureHunter.TREASURES.length];
+    }
+
+    /**
+     * Records the hunter's gold at the end of a turn.
+     *
+     * @param turn The turn that just finished, starting at 0.
+     * @param gold The hunter's gold after the turn.
+     */
+    public void recordTurn(int turn, int gold) {
+        goldSum[turn] += gold;
+        goldSamples[turn]++;
+    }
+
+    /**
+     * Records the turn on which a treasure was first collected.
+     *
+     * @param treasureIndex The index of the treasure in TreasureHunter.TREASURES.
+     * @param turn The turn it was collected on, starting at 0.
+     */
+    public void recordTreasure(int treasureIndex, int turn) {
+        treasureTurnSum[treasureIndex] += turn + 1;
+        treasureFound[treasureIndex]++;
+    }
+
+    /**
+     * Records a finished game.
+     *
+     * @param won true if the hunter collected all the treasures.
+     * @param turns The number of turns played.
+     * @param finalGold The hunter's gold when the game ended.
+     */
+    public void recordGame(boolean won, int turns, int finalGold) {
+        games++;
+        if (won) {
+            wins++;
+        }
+        totalTurns += turns;
+        totalFinalGold += finalGold;
+    }
+
+    /**
+     * Adds another result into this one.
+     *
+     * @param other The result to add.
+     * @return this result.
+     */
+    public SimulationResult merge(SimulationResult other) {
+        games += other.games;
+        wins += other.wins;
+        totalTurns += other.totalTurns;
+        totalFinalGold += other.totalFinalGold;
+        for (int i = 0; i < goldSum.length && i < other.goldSum.length; i++) {
+            goldSum[i] += other.goldSum[i];
+            goldSamples[i] += other.goldSamples[i];
+        }
+        for (int i = 0; i < treasureTurnSum.length; i++) {
+            treasureTurnSum[i] += other.treasureTurnSum[i];
+            treasureFound[i] += other.treasureFound[i];
+        }
+        return this;
+    }
+
+    /**
+     * Stores how long the run took so throughput can be reported.
+     */
+    public void setTiming(long elapsedNanos, int threads) {
+        this.elapsedNanos = elapsedNanos;
+        this.threads = threads;
+    }
+
+    public void setStats(SimulationStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * @return The distributions collected during the run, or null if it didn't collect any.
+     */
+    public SimulationStats getStats() {
+        return stats;
+    }
+
+    // accessors
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    public double getAverageTurns() {
+        return games == 0 ? 0 : (double) totalTurns / games;
+    }
+
+    public double getAverageFinalGold() {
+        return games == 0 ? 0 : (double) totalFinalGold / games;
+    }
+
+    /**
+     * @return The average gold of the games that were still running on the given turn.
+     */
+    public double getAverageGoldAt(int turn) {
+        return goldSamples[turn] == 0 ? 0 : (double) goldSum[turn] / goldSamples[turn];
+    }
+
+    /**
+     * @return The average number of turns it took to collect the treasure, counting only games where it was collected.
+     */
+    public double getAverageTurnsToFind(int treasureIndex) {
+        return treasureFound[treasureIndex] == 0 ? 0 : (double) treasureTurnSum[treasureIndex] / treasureFound[treasureIndex];
+    }
+
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    public double getGamesPerSecondPerCore() {
+        return threads == 0 ? 0 : getGamesPerSecond() / threads;
+    }
+
+    /**
+     * @return A printable report of the results.
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(String.format("games: %d, wins: %d (%.2f%%)%n", games, wins, getWinRate() * 100));
+        str.append(String.format("average turns: %.2f, average final gold: %.2f%n", getAverageTurns(), getAverageFinalGold()));
+        for (int i = 0; i < treasureFound.length; i++) {
+            if (treasureFound[i] > 0 && !TreasureHunter.TREASURES[i].equals("Dust")) {
+                str.append(String.format("%s found in %.2f%% of games, after %.2f turns on average%n",
+                        TreasureHunter.TREASURES[i], 100.0 * treasureFound[i] / games, getAverageTurnsToFind(i)));
+            }
+        }
+        str.append("gold curve (turn: average gold):");
+        for (int turn = 0; turn < goldSum.length; turn += Math.max(1, goldSum.length / 10)) {
+            if (goldSamples[turn] > 0) {
+                str.append(String.format(" %d: %.1f", turn + 1, getAverageGoldAt(turn)));
+            }
+        }
+        if (stats != null) {
+            str.append(String.format("%n")).append(stats);
+        }
+        str.append(String.format("%nthroughput: %.0f games/sec, %.0f games/sec per core (%d threads)",
+                getGamesPerSecond(), getGamesPerSecondPerCore(), threads));
+        return str.toString();
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs a large number of simulated games on a fork-join pool and adds up the results.<p>
+ * The run's RandomSource is split in the same order every time (by game range, not by thread),
+ * so the results are the same no matter how many threads are used.
+ */
+
+public class SimulationRunner {
+    // constants
+    private static final int GAMES_PER_TASK = 1024;
+
+    // instance variables
+    private Simulation simulation;
+    private int threads;
+    private boolean collectStats;
+    private ThreadLocal<SimulationStats> threadStats; // each worker's own stats during a run
+
+    /**
+     * @param simulation The game setup to play over and over.
+     * @param threads The number of worker threads.
+     */
+    public SimulationRunner(Simulation simulation, int threads) {
+        this.simulation = simulation;
+        this.threads = threads;
+    }
+
+    /**
+     * Has run() also collect SimulationStats: every worker thread fills its own, and they are merged at the end of the run.
+     */
+    public void setCollectStats(boolean collectStats) {
+        this.collectStats = collectStats;
+    }
+
+    /**
+     * Plays the given number of games.
+     *
+     * @param games The number of games to play.
+     * @param seed The seed for the whole run.
+     * @return The combined results.
+     */
+    public SimulationResult run(long games, long seed) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<SimulationStats> allStats = new CopyOnWriteArrayList<>();
+        if (collectStats) {
+            threadStats = ThreadLocal.withInitial(() -> {
+                SimulationStats stats = new SimulationStats(simulation.getMaxTurns());
+                allStats.add(stats);
+                return stats;
+            });
+        }
+        try {
+            long start = System.nanoTime();
+            SimulationResult result = pool.invoke(new GamesTask(0, games, new SplittableRandomSource(seed)));
+            if (collectStats) {
+                SimulationStats stats = new SimulationStats(simulation.getMaxTurns());
+                for (SimulationStats partial : allStats) {
+                    stats.merge(partial);
+                }
+                result.setStats(stats);
+            }
+            result.setTiming(System.nanoTime() - start, threads);
+            return result;
+        } finally {
+            threadStats = null;
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Makes a task that plays the given number of games when run in any ForkJoinPool, so callers with their own pool
+     * can run many of these side by side.
+     *
+     * @param games The number of games to play.
+     * @param random The RandomSource the games' sources are split from; it belongs to the task from now on.
+     * @return The task, which returns the combined results.
+     */
+    public RecursiveTask<SimulationResult> newTask(long games, RandomSource random) {
+        return new GamesTask(0, games, random);
+    }
+
+    /**
+     * Plays the games numbered from first up to (but not including) last, splitting the range while it is large.
+     */
+    private class GamesTask extends RecursiveTask<SimulationResult> {
+        private static final long serialVersionUID = 1L;
+
+        private long first;
+        private long last;
+        private RandomSource random;
+
+        GamesTask(long first, long last, RandomSource random) {
+            this.first = first;
+            this.last = last;
+            this.random = random;
+        }
+
+        protected SimulationResult compute() {
+            if (last - first <= GAMES_PER_TASK) {
+                SimulationResult result = new SimulationResult(simulation.getMaxTurns());
+                SimulationStats stats = threadStats == null ? null : threadStats.get();
+                for (long game = first; game < last; game++) {
+                    simulation.play(random.split(), result, stats);
+                }
+                return result;
+            }
+            long middle = (first + last) >>> 1;
+            // split before forking so each half always gets the same generator
+            GamesTask left = new GamesTask(first, middle, random.split());
+            GamesTask right = new GamesTask(middle, last, random);
+            left.fork();
+            SimulationResult rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+    }
+
+    /**
+     * Usage: SimulationRunner [games] [mode] [threads] [seed] [statsDirectory]<p>
+     * With a stats directory, SimulationStats are collected too and written there as CSV files.
+     */
+    public static void main(String[] args) throws IOException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        DifficultyProfile mode = DifficultyProfile.forCode(args.length > 1 ? args[1] : "n");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        Path statsDirectory = args.length > 4 ? Path.of(args[4]) : null;
+
+        Simulation simulation = new Simulation(mode, new GreedyStrategy(), 200);
+        SimulationRunner runner = new SimulationRunner(simulation, threads);
+        runner.setCollectStats(statsDirectory != null);
+        SimulationResult result = runner.run(games, seed);
+        System.out.println("mode: " + mode + ", seed: " + seed);
+        System.out.println(result);
+        if (statsDirectory != null) {
+            result.getStats().writeCsv(statsDirectory);
+            System.out.println("stats written to " + statsDirectory);
+        }
+    }
+}
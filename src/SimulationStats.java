@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * SimulationStats collects distributions from simulated games as they are played, without keeping any game:
+ * a histogram of gold for every turn, the turn each game was won on, the final gold, and how often crossing each
+ * terrain cost the hunter their item.<p>
+ * Everything is a fixed-size array of counts, so the memory used is the same for a thousand games or a billion.
+ * Each worker thread fills its own SimulationStats and they are added together with merge() at the end;
+ * counts add up the same in any order, so the totals don't depend on the number of threads.<p>
+ * Quantiles come from the histograms: gold is counted exactly from 0 to MAX_EXACT_GOLD, and anything above
+ * goes in one overflow bucket.
+ */
+
+public class SimulationStats implements EventSink {
+    // constants
+    public static final int MAX_EXACT_GOLD = 255;
+    private static final int GOLD_BUCKETS = MAX_EXACT_GOLD + 2;
+    private static final int TERRAINS = Town.TERRAIN_NAMES.length;
+
+    // instance variables
+    private int maxTurns;
+    private long games;
+    private long[] goldAtTurn;   // GOLD_BUCKETS counts per turn, for the games still running after it
+    private long[] winsAtTurn;   // games won on each turn
+    private long[] finalGold;
+    private long[] crossings = new long[TERRAINS];
+    private long[] itemsLost = new long[TERRAINS];
+
+    /**
+     * @param maxTurns The longest game that will be recorded.
+     */
+    public SimulationStats(int maxTurns) {
+        this.maxTurns = maxTurns;
+        goldAtTurn = new long[maxTurns * GOLD_BUCKETS];
+        winsAtTurn = new long[maxTurns];
+        finalGold = new long[GOLD_BUCKETS];
+    }
+
+    private static int bucketOf(int gold) {
+        return Math.min(Math.max(gold, 0), MAX_EXACT_GOLD + 1);
+    }
+
+    /**
+     * Records the hunter's gold at the end of a turn.
+     *
+     * @param turn The turn that just finished, starting at 0.
+     * @param gold The hunter's gold after the turn.
+     */
+    public void recordTurn(int turn, int gold) {
+        goldAtTurn[turn * GOLD_BUCKETS + bucketOf(gold)]++;
+    }
+
+    /**
+     * Records a finished game.
+     *
+     * @param won true if the hunter collected all the treasures.
+     * @param turns The number of turns played.
+     * @param gold The hunter's gold when the game ended.
+     */
+    public void recordGame(boolean won, int turns, int gold) {
+        games++;
+        if (won && turns > 0) {
+            winsAtTurn[turns - 1]++;
+        }
+        finalGold[bucketOf(gold)]++;
+    }
+
+    /**
+     * Counts terrain crossings and lost items from the town's events; other events are ignored.
+     */
+    public void accept(GameEvent event) {
+        if (event instanceof GameEvent.TerrainCrossed) {
+            crossings[((GameEvent.TerrainCrossed) event).getTerrainId()]++;
+        } else if (event instanceof GameEvent.ItemLost) {
+            itemsLost[((GameEvent.ItemLost) event).getTerrainId()]++;
+        }
+    }
+
+    /**
+     * Adds another thread's counts into this one.
+     *
+     * @return this.
+     */
+    public SimulationStats merge(SimulationStats other) {
+        games += other.games;
+        add(goldAtTurn, other.goldAtTurn);
+        add(winsAtTurn, other.winsAtTurn);
+        add(finalGold, other.finalGold);
+        add(crossings, other.crossings);
+        add(itemsLost, other.itemsLost);
+        return this;
+    }
+
+    private static void add(long[] into, long[] from) {
+        for (int i = 0; i < into.length && i < from.length; i++) {
+            into[i] += from[i];
+        }
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * @return The number of games still running after the given turn.
+     */
+    public long getGamesAt(int turn) {
+        long count = 0;
+        for (int bucket = 0; bucket < GOLD_BUCKETS; bucket++) {
+            count += goldAtTurn[turn * GOLD_BUCKETS + bucket];
+        }
+        return count;
+    }
+
+    /**
+     * @param turn The turn, starting at 0.
+     * @param quantile From 0 to 1, e.g. 0.5 for the median.
+     * @return The gold at that quantile among games still running after the turn; MAX_EXACT_GOLD + 1 means more than MAX_EXACT_GOLD.
+     */
+    public int getGoldQuantileAt(int turn, double quantile) {
+        return quantileOf(goldAtTurn, turn * GOLD_BUCKETS, getGamesAt(turn), quantile);
+    }
+
+    public int getFinalGoldQuantile(double quantile) {
+        return quantileOf(finalGold, 0, games, quantile);
+    }
+
+    private static int quantileOf(long[] counts, int offset, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int bucket = 0; bucket < GOLD_BUCKETS; bucket++) {
+            seen += counts[offset + bucket];
+            if (seen >= target) {
+                return bucket;
+            }
+        }
+        return GOLD_BUCKETS - 1;
+    }
+
+    /**
+     * @return The chance of having collected every treasure by the end of the given turn (starting at 0).
+     */
+    public double getWinProbabilityBy(int turn) {
+        long won = 0;
+        for (int i = 0; i <= turn; i++) {
+            won += winsAtTurn[i];
+        }
+        return games == 0 ? 0 : (double) won / games;
+    }
+
+    /**
+     * @return The share of crossings of the terrain that lost the hunter their item.
+     */
+    public double getItemLossRate(int terrainId) {
+        long attempts = crossings[terrainId] + itemsLost[terrainId];
+        return attempts == 0 ? 0 : (double) itemsLost[terrainId] / attempts;
+    }
+
+    /**
+     * Writes the summary as two CSV files in a directory: turns.csv, with a row per turn and a column per statistic,
+     * and terrain.csv, with a row per terrain.
+     *
+     * @param directory The directory, created if needed.
+     */
+    public void writeCsv(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(directory.resolve("turns.csv")))) {
+            out.println("turn,games_running,gold_p10,gold_p50,gold_p90,gold_p99,win_probability_by_turn");
+            for (int turn = 0; turn < maxTurns; turn++) {
+                out.printf(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%.6f%n", turn + 1, getGamesAt(turn),
+                        getGoldQuantileAt(turn, 0.1), getGoldQuantileAt(turn, 0.5), getGoldQuantileAt(turn, 0.9),
+                        getGoldQuantileAt(turn, 0.99), getWinProbabilityBy(turn));
+            }
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(directory.resolve("terrain.csv")))) {
+            out.println("terrain,item,crossings,items_lost,item_loss_rate");
+            for (int id = 0; id < TERRAINS; id++) {
+                out.printf(Locale.ROOT, "%s,%s,%d,%d,%.6f%n", Town.TERRAIN_NAMES[id], Town.TERRAIN_ITEMS[id].toLowerCase(),
+                        crossings[id], itemsLost[id], getItemLossRate(id));
+            }
+        }
+    }
+
+    /**
+     * @return A short printable summary.
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(String.format("final gold p10/p50/p90: %d/%d/%d%n", getFinalGoldQuantile(0.1), getFinalGoldQuantile(0.5), getFinalGoldQuantile(0.9)));
+        str.append("chance of all treasures by turn:");
+        for (int turn = Math.max(0, maxTurns / 10 - 1); turn < maxTurns; turn += Math.max(1, maxTurns / 10)) {
+            str.append(String.format(" %d: %.1f%%", turn + 1, 100 * getWinProbabilityBy(turn)));
+        }
+        str.append(String.format("%nitem lost when crossing:"));
+        for (int id = 0; id < TERRAINS; id++) {
+            str.append(String.format(" %s %.1f%%", Town.TERRAIN_NAMES[id], 100 * getItemLossRate(id)));
+        }
+        return str.toString();
+    }
+}
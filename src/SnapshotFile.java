@@ -0,0 +1,102 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file of GameSnapshot records, one slot per game, mapped into memory.<p>
+ * Saving or loading a game reads or writes its record in the mapped file directly, so checkpointing a whole server
+ * is one pass of small in-memory writes followed by force(). Different slots can be saved from different threads at the same time.
+ * <pre>
+ *  0  int  magic "THSF"
+ *  4  int  format version
+ *  8  int  record size
+ * 12  int  number of slots
+ * 16  records
+ * </pre>
+ */
+
+public class SnapshotFile implements Closeable {
+    // constants
+    private static final int MAGIC = 0x54485346; // "THSF"
+    private static final int HEADER_SIZE = 16;
+
+    // instance variables
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int slots;
+
+    /**
+     * Opens a snapshot file, creating it with the given number of empty slots if it doesn't exist.
+     *
+     * @param file The file.
+     * @param slots The number of slots for a new file; an existing file keeps its own size.
+     * @throws IOException if the file can't be opened, or isn't a snapshot file in this format version.
+     */
+    public SnapshotFile(Path file, int slots) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean isNew = channel.size() == 0;
+        if (!isNew) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != GameSnapshot.VERSION || header.getInt(8) != GameSnapshot.RECORD_SIZE) {
+                channel.close();
+                throw new IOException(file + " is not a snapshot file this version can read");
+            }
+            slots = header.getInt(12);
+        }
+        this.slots = slots;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * GameSnapshot.RECORD_SIZE);
+        if (isNew) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, GameSnapshot.VERSION);
+            buffer.putInt(8, GameSnapshot.RECORD_SIZE);
+            buffer.putInt(12, slots);
+        }
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * Saves a game in progress into a slot.
+     */
+    public void save(int slot, TreasureHunter game) {
+        GameSnapshot.of(game).writeTo(buffer, offsetOf(slot));
+    }
+
+    /**
+     * @return The game saved in the slot, or null if the slot is empty.
+     */
+    public GameSnapshot load(int slot) {
+        return GameSnapshot.readFrom(buffer, offsetOf(slot));
+    }
+
+    /**
+     * Empties a slot.
+     */
+    public void clear(int slot) {
+        GameSnapshot.clear(buffer, offsetOf(slot));
+    }
+
+    /**
+     * Writes any saved games still only in memory out to the disk.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private int offsetOf(int slot) {
+        if (slot < 0 || slot >= slots) {
+            throw new IndexOutOfBoundsException("slot " + slot + " of " + slots);
+        }
+        return HEADER_SIZE + slot * GameSnapshot.RECORD_SIZE;
+    }
+}
@@ -0,0 +1,37 @@
+import java.util.SplittableRandom;
+
+/**
+ * The default RandomSource, backed by java.util.SplittableRandom.<p>
+ * It isn't synchronized, so one instance must only be used by one thread at a time; use split() to hand a generator to another thread.
+ */
+
+public class SplittableRandomSource implements RandomSource {
+    // instance variables
+    private SplittableRandom random;
+
+    /**
+     * Creates an unseeded source, for normal play.
+     */
+    public SplittableRandomSource() {
+        random = new SplittableRandom();
+    }
+
+    /**
+     * @param seed The seed; the same seed always gives the same rolls.
+     */
+    public SplittableRandomSource(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    private SplittableRandomSource(SplittableRandom random) {
+        this.random = random;
+    }
+
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    public RandomSource split() {
+        return new SplittableRandomSource(random.split());
+    }
+}
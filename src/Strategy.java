@@ -0,0 +1,29 @@
+/**
+ * A Strategy makes the choices a player would normally type in, so a game can be played without anyone at the keyboard.<p>
+ * Moves use the same letters as the menu in TreasureHunter: (b)uy, (s)ell, (m)ove, (h)unt, (d)ig, (l)ook for trouble and e(x)it.
+ */
+
+public interface Strategy {
+    /**
+     * Picks the next menu option.
+     *
+     * @param hunter The hunter being played.
+     * @param town The town the hunter is currently in.
+     * @return One of the menu letters.
+     */
+    String nextMove(Hunter hunter, Town town);
+
+    /**
+     * Picks the item to ask for after choosing (b)uy.
+     *
+     * @return The item name, or null to walk out of the shop.
+     */
+    String itemToBuy(Hunter hunter, Town town);
+
+    /**
+     * Picks the item to offer after choosing (s)ell.
+     *
+     * @return The item name, or null to walk out of the shop.
+     */
+    String itemToSell(Hunter hunter, Town town);
+}
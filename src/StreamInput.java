@@ -0,0 +1,97 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An InputSource that reads lines from a stream, such as the keyboard or a network connection.<p>
+ * A stream from someone who can't be trusted (a network connection) can be given a longest line; a longer line
+ * is never held in memory, it ends the input with an UncheckedIOException, caused by a LineTooLongException,
+ * as soon as it goes past the limit.
+ */
+
+public class StreamInput implements InputSource {
+    /** The keyboard; everything that reads System.in should share this one reader. */
+    public static final StreamInput STDIN = new StreamInput(System.in);
+
+    // instance variables
+    private BufferedReader reader;
+    private int maxLineChars = Integer.MAX_VALUE;
+    private StringBuilder line;  // only used when lines are limited
+    private boolean skipNewline; // the last line ended with a carriage return, so a newline straight after it is part of the ending
+
+    /**
+     * @param in The stream to read lines from.
+     */
+    public StreamInput(InputStream in) {
+        reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param in The stream to read lines from.
+     * @param bufferSize The size of the read buffer in chars; small buffers keep many idle connections cheap.
+     */
+    public StreamInput(InputStream in, int bufferSize) {
+        reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), bufferSize);
+    }
+
+    /**
+     * @param in The stream to read lines from.
+     * @param bufferSize The size of the read buffer in chars.
+     * @param maxLineChars The longest line accepted, not counting its line ending.
+     */
+    public StreamInput(InputStream in, int bufferSize, int maxLineChars) {
+        this(in, bufferSize);
+        this.maxLineChars = maxLineChars;
+        line = new StringBuilder();
+    }
+
+    /**
+     * @return The next line, or null at the end of the stream.
+     * @throws UncheckedIOException if reading fails or the line is longer than the limit.
+     */
+    public String nextLine() {
+        try {
+            return line == null ? reader.readLine() : readLimitedLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Same as BufferedReader.readLine() (a line ends at a newline, a carriage return, or both), but stops reading
+     * once the line is too long.
+     */
+    private String readLimitedLine() throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n' && skipNewline) {
+                skipNewline = false;
+                continue;
+            }
+            skipNewline = c == '\r';
+            if (c == '\n' || c == '\r') {
+                return line.toString();
+            }
+            if (line.length() == maxLineChars) {
+                throw new LineTooLongException(maxLineChars);
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    /**
+     * Thrown when a line goes past the longest line the stream accepts.
+     */
+    public static class LineTooLongException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        LineTooLongException(int maxLineChars) {
+            super("Line longer than " + maxLineChars + " chars");
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.awt.Color;
+import java.io.PrintStream;
+
+/**
+ * A Display that writes everything, menu included, to a text stream using textColor codes.<p>
+ * Text is kept in a buffer and written in one go when flush() is called, so a turn costs one write
+ * instead of one per line. It doesn't need a screen, so it works on servers without AWT.
+ */
+
+public class TerminalDisplay implements Display {
+    // instance variables
+    private PrintStream out;
+    private StringBuilder buffer = new StringBuilder();
+
+    /**
+     * Creates a display that writes to System.out.
+     */
+    public TerminalDisplay() {
+        this(System.out);
+    }
+
+    /**
+     * @param out Where the text is written.
+     */
+    public TerminalDisplay(PrintStream out) {
+        this.out = out;
+    }
+
+    public void addTextToWindow(String text) {
+        buffer.append(text);
+    }
+
+    public void addTextToWindow(String text, Color color) {
+        String code = colorCode(color);
+        if (code == null) {
+            buffer.append(text);
+        } else {
+            buffer.append(code).append(text).append(textColor.RESET);
+        }
+    }
+
+    /**
+     * A terminal keeps its history, so a new turn is just separated from the last one by a blank line.
+     */
+    public void clear() {
+        buffer.append("\n\n");
+    }
+
+    public void print(String message) {
+        buffer.append(message);
+    }
+
+    public void println(String message) {
+        buffer.append(message).append('\n');
+    }
+
+    public void flush() {
+        if (buffer.length() > 0) {
+            out.print(buffer);
+            out.flush();
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * @return The textColor code closest to a window color, or null to leave the text uncolored.
+     */
+    private static String colorCode(Color color) {
+        if (Color.YELLOW.equals(color)) {
+            return textColor.YELLOW_BOLD_BRIGHT;
+        } else if (Color.RED.equals(color)) {
+            return textColor.RED_BOLD_BRIGHT;
+        } else if (Color.GREEN.equals(color)) {
+            return textColor.GREEN_BOLD_BRIGHT;
+        } else if (Color.BLUE.equals(color)) {
+            return textColor.BLUE_BOLD_BRIGHT;
+        } else if (Color.CYAN.equals(color)) {
+            return textColor.CYAN_BOLD_BRIGHT;
+        }
+        return null;
+    }
+}
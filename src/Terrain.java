@@ -4,9 +4,21 @@
  */
 
 public class Terrain {
+    // the six terrains, shared by every town since a terrain never changes; a terrain's id is its index
+    private static final Terrain[] ALL = new Terrain[Town.TERRAIN_NAMES.length];
+
+    static {
+        for (int id = 0; id < ALL.length; id++) {
+            ALL[id] = new Terrain(Town.TERRAIN_NAMES[id], Town.TERRAIN_ITEMS[id]);
+        }
+    }
+
     // instance variables
     private String terrainName;
     private String neededItem;
+    private int neededItemId;
+    private String crossedMessage;
+    private String itemLostMessage;
 
     /**
      * Sets the class member variables
@@ -17,6 +29,19 @@ public class Terrain {
     public Terrain(String name, String item) {
         terrainName = name;
         neededItem = item.toLowerCase();
+        neededItemId = Items.idOf(neededItem);
+
+        // the messages for leaving town never change, so they are built once
+        crossedMessage = "You used your " + textColor.PURPLE_BOLD_BRIGHT + neededItem + textColor.RESET + " to cross the " +  textColor.CYAN_BRIGHT + terrainName + textColor.RESET + ".";
+        itemLostMessage = crossedMessage + "\nUnfortunately, you lost your " + textColor.PURPLE_BOLD_BRIGHT + neededItem + textColor.RESET + ".";
+    }
+
+    /**
+     * @param id The terrain's id, its position in Town.TERRAIN_NAMES.
+     * @return The shared Terrain for that id.
+     */
+    public static Terrain forId(int id) {
+        return ALL[id];
     }
 
     // accessors
@@ -28,6 +53,14 @@ public class Terrain {
         return neededItem;
     }
 
+    public String getCrossedMessage() {
+        return crossedMessage;
+    }
+
+    public String getItemLostMessage() {
+        return itemLostMessage;
+    }
+
     /**
      * Guards against a hunter crossing the zone without the proper item.
      * Searches the hunter's inventory for the proper item and determines whether the hunter can cross.
@@ -36,7 +69,7 @@ public class Terrain {
      * @return true if the Hunter has the proper item.
      */
     public boolean canCrossTerrain(Hunter hunter) {
-        if (hunter.hasItemInKit(neededItem)) {
+        if (hunter.hasItemInKit(neededItemId)) {
             return true;
         }
         return false;
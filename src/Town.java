@@ -1,50 +1,280 @@
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * The Town Class is where it all happens.
  * The Town is designed to manage all the things a Hunter can do in town.
+ * In the shared-world mode a Town plays a SharedTown (see enter()), whose search and dig are claimed by whichever
+ * hunter in it gets there first.
  * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
  */
 
 public class Town {
+    // messages that only depend on a roll are built once here, so a turn doesn't build them again
+    private static final String BRAWL_START = textColor.RED_BRIGHT + "You want trouble, stranger!  You got it!\nOof! Umph! Ow!\n" + textColor.RESET;
+    private static final String[] BRAWL_WON = new String[11];  // indexed by the gold won
+    private static final String[] BRAWL_LOST = new String[11]; // indexed by the gold lost
+    private static final String[] GOLD_FOUND = new String[21]; // indexed by the gold dug up
+
+    static {
+        for (int gold = 1; gold < BRAWL_WON.length; gold++) {
+            BRAWL_WON[gold] = BRAWL_START + textColor.RED_BRIGHT + "Okay, stranger! You proved yer mettle. Here, take my gold." + textColor.RESET
+                    + textColor.RED_BRIGHT + "\nYou won the brawl and receive " + textColor.YELLOW_BRIGHT + gold + " gold." + textColor.RESET;
+            BRAWL_LOST[gold] = BRAWL_START + textColor.RED_BRIGHT + "That'll teach you to go lookin' fer trouble in MY town! Now pay up!"
+                    + textColor.RED_BRIGHT + "\nYou lost the brawl and pay " + textColor.YELLOW_BRIGHT + gold + " gold." + textColor.RESET;
+        }
+        for (int gold = 1; gold < GOLD_FOUND.length; gold++) {
+            GOLD_FOUND[gold] = textColor.WHITE_BOLD_BRIGHT + "You found ... "  + textColor.YELLOW_BOLD_BRIGHT + gold + " gold" + textColor.WHITE_BOLD_BRIGHT + "!" + textColor.RESET;
+        }
+    }
+
+    // what happens in towns, counted across every game (see Metrics)
+    private static final LongAdder NO_TROUBLE = Metrics.counter("town.brawl.none");
+    private static final LongAdder BRAWLS_WON = Metrics.counter("town.brawl.won");
+    private static final LongAdder BRAWLS_LOST = Metrics.counter("town.brawl.lost");
+    private static final LongAdder BRAWL_GOLD_WON = Metrics.counter("town.brawl.goldWon");
+    private static final LongAdder BRAWL_GOLD_LOST = Metrics.counter("town.brawl.goldLost");
+    private static final LongAdder DIGS_WITH_GOLD = Metrics.counter("town.dig.gold");
+    private static final LongAdder DIGS_WITH_DIRT = Metrics.counter("town.dig.dirt");
+    private static final LongAdder DUG_GOLD = Metrics.counter("town.dig.goldFound");
+    private static final LongAdder CROSSINGS = Metrics.counter("town.leave.crossed");
+    private static final LongAdder ITEMS_LOST = Metrics.counter("town.leave.itemLost");
+    private static final LongAdder STUCK = Metrics.counter("town.leave.stuck");
+
+    // the six terrains; a terrain's id is its position in these arrays
+    static final String[] TERRAIN_NAMES = {"Mountains", "Ocean", "Plains", "Desert", "Jungle", "Marsh"};
+    static final String[] TERRAIN_ITEMS = {"Rope", "Boat", "Horse", "Water", "Machete", "Boots"};
+    private static final String[] DESCRIPTIONS = new String[TERRAIN_NAMES.length]; // indexed by terrain id
+
+    static {
+        for (int id = 0; id < DESCRIPTIONS.length; id++) {
+            DESCRIPTIONS[id] = "This nice little town is surrounded by " + textColor.CYAN_BOLD + TERRAIN_NAMES[id] + textColor.RESET + ".";
+        }
+    }
+
     // instance variables
     private Hunter hunter;
     private Shop shop;
     private Terrain terrain;
+    private int terrainId;
     private String printMessage;
     private boolean toughTown;
-    private String mode;
+    private DifficultyProfile difficulty;
+    private String[] treasures;
 
     private boolean searched;
     private boolean digged;
     private String treasure;
+    private RandomSource random;
+    private String stuckMessage; // built the first time the hunter can't leave
+    private String welcomedName;  // the name the welcome messages below were built for
+    private String welcome;
+    private String toughWelcome;
+    private EventSink events; // null when nobody is listening, so no events are made
+    private boolean counted = true; // false for a fork, whose made-up turns mustn't show in Metrics
+    private SharedTown shared;       // null unless this town is a town of the shared world
+    private boolean inShared;        // the hunter is counted among the shared town's hunters
+    private boolean inShop;          // the hunter is in the middle of a dialogue with the shop
+    private int goldBeforeShop;
 
     /**
-     * The Town Constructor takes in a shop and the surrounding terrain, but leaves the hunter as null until one arrives.
+     * The Town Constructor takes in a shop and the difficulty, but leaves the hunter as null until one arrives.
      *
      * @param shop The town's shoppe.
-     * @param toughness The surrounding terrain.
+     * @param difficulty The difficulty mode, which decides how likely the town is to be tough and whether items can be lost leaving it.
      */
-    public Town(Shop shop, double toughness, String[] treasures, String mode) {
+    public Town(Shop shop, DifficultyProfile difficulty, String[] treasures) {
+        this(shop, difficulty, treasures, new SplittableRandomSource());
+    }
+
+    /**
+     * Same as the other constructor, but every roll in this town comes from the given RandomSource,
+     * so a seeded source makes the whole town reproducible.
+     *
+     * @param random The game's RandomSource, used for all of the town's rolls.
+     */
+    public Town(Shop shop, DifficultyProfile difficulty, String[] treasures, RandomSource random) {
+        this.random = random;
         this.shop = shop;
-        this.terrain = getNewTerrain();
-        boolean searched = false;
-        boolean digged = false;
-        this.mode = mode;
-        treasure = treasures[(int) (Math.random() * treasures.length)];
+        this.difficulty = difficulty;
+        this.treasures = treasures;
+        reset();
+    }
+
+    /**
+     * Rebuilds a town from saved state (see GameSnapshot) without rolling anything.
+     *
+     * @param terrainId The id of the surrounding terrain.
+     * @param toughTown Whether the town is a tough town.
+     * @param treasure The treasure hidden in the town.
+     * @param searched Whether the town has been searched for treasure.
+     * @param digged Whether the town has been dug for gold.
+     */
+    Town(Shop shop, DifficultyProfile difficulty, RandomSource random, int terrainId, boolean toughTown, String treasure, boolean searched, boolean digged) {
+        this.random = random;
+        this.shop = shop;
+        this.difficulty = difficulty;
+        this.treasures = TreasureHunter.TREASURES;
+        restore(terrainId, toughTown, treasure, searched, digged);
+    }
+
+    /**
+     * Turns this town into a new town, so moving on doesn't need a new Town object.<p>
+     * The rolls are made in the same order the constructor always made them,
+     * so a game that reuses one town plays out exactly like one that builds a new town on every move.
+     * The hunter leaves too, so hunterArrives() has to be called again.
+     */
+    public void reset() {
+        int terrainId = rollTerrainId(random);
+        String treasure = treasures[(int) (random.nextDouble() * treasures.length)];
+
+        // higher toughness = more likely to be a tough town
+        boolean toughTown = (random.nextDouble() < difficulty.getToughness());
+        restore(terrainId, toughTown, treasure, false, false);
+    }
+
+    /**
+     * Turns this town into the town described, without rolling anything (see GameSnapshot and WorldMap).
+     */
+    void restore(int terrainId, boolean toughTown, String treasure, boolean searched, boolean digged) {
+        vacate();
+        shared = null;
+        this.terrainId = terrainId;
+        this.terrain = Terrain.forId(terrainId);
+        this.toughTown = toughTown;
+        this.treasure = treasure;
+        this.searched = searched;
+        this.digged = digged;
 
         // the hunter gets set using the hunterArrives method, which
         // gets called from a client class
         hunter = null;
-
         printMessage = "";
+        stuckMessage = null;
+    }
 
-        // higher toughness = more likely to be a tough town
-        toughTown = (Math.random() < toughness);
+    /**
+     * Turns this town into a town of the shared world, with the hunter still to arrive. From now on searching and
+     * digging here are claims shared with every other hunter in that town; everything else plays as usual.
+     * The hunter leaves the town they were in.
+     *
+     * @param town The town of the shared world (see WorldMap.sharedTowns()).
+     */
+    public void enter(SharedTown town) {
+        restore(town.getTerrainId(), town.isToughTown(), town.getTreasure(), false, false);
+        shared = town;
     }
 
+    /**
+     * Takes the hunter out of the shared town's count of hunters, e.g. when the player quits or hangs up.
+     * Does nothing for a town that isn't shared, or whose hunter has already gone.
+     */
+    public void vacate() {
+        if (inShared) {
+            shared.hunterLeaves();
+            inShared = false;
+        }
+    }
+
+    /**
+     * Makes an independent copy of the town, with the given hunter in it, e.g. to try out moves without changing the real one.<p>
+     * The shop, the terrain and the messages never change during play, so the copy shares them
+     * and only the town's own few fields are copied. The copy publishes no events, and what happens in it isn't counted in Metrics.
+     * A copy of a shared town is a town of its own, searched and dug as the shared town is now.
+     *
+     * @param hunter The hunter in the copy, usually a fork of this town's hunter.
+     * @param random The RandomSource for the copy's rolls, so it doesn't use up this town's rolls.
+     * @return The copy.
+     */
+    public Town fork(Hunter hunter, RandomSource random) {
+        Town copy = new Town(shop, difficulty, random, terrainId, toughTown, treasure, hasBeenSearched(), hasBeenDug());
+        copy.treasures = treasures;
+        copy.hunter = hunter;
+        copy.printMessage = printMessage;
+        copy.counted = false;
+        return copy;
+    }
+
+    /**
+     * @return The message describing what last happened in town; it is only put together when asked for.
+     */
     public String getLatestNews() {
+        if (printMessage == null) {
+            // left unbuilt by huntForTreasure(), since a game without a display never reads it
+            printMessage = textColor.WHITE_BOLD_BRIGHT + "You found a... \n"  + textColor.GREEN_BOLD_BRIGHT + treasure + textColor.WHITE_BOLD_BRIGHT + "!" + textColor.RESET;
+        }
         return printMessage;
     }
 
+    /**
+     * Publishes a GameEvent to the sink for every outcome in this town from now on.
+     *
+     * @param events The sink, or null to publish nothing.
+     */
+    public void setEventSink(EventSink events) {
+        this.events = events;
+    }
+
+    // accessors used by the headless simulation
+    public Shop getShop() {
+        return shop;
+    }
+
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    public int getTerrainId() {
+        return terrainId;
+    }
+
+    public String getTreasure() {
+        return treasure;
+    }
+
+    public boolean isToughTown() {
+        return toughTown;
+    }
+
+    public boolean hasBeenSearched() {
+        return shared == null ? searched : shared.hasBeenSearched();
+    }
+
+    public boolean hasBeenDug() {
+        return shared == null ? digged : shared.hasBeenDug();
+    }
+
+    /**
+     * @return true if the hunter gets to search the town, which can only happen once.
+     */
+    private boolean claimSearch() {
+        if (shared != null) {
+            return shared.claimSearch();
+        }
+        if (searched) {
+            return false;
+        }
+        searched = true;
+        return true;
+    }
+
+    /**
+     * @return true if the hunter gets to dig the town, which can only happen once.
+     */
+    private boolean claimDig() {
+        if (shared != null) {
+            return shared.claimDig();
+        }
+        if (digged) {
+            return false;
+        }
+        digged = true;
+        return true;
+    }
+
+    public DifficultyProfile getDifficulty() {
+        return difficulty;
+    }
+
     /**
      * Assigns an object to the Hunter in town.
      *
@@ -52,12 +282,21 @@ public class Town {
      */
     public void hunterArrives(Hunter hunter) {
         this.hunter = hunter;
-        printMessage = "Welcome to town, " + hunter.getHunterName() + ".";
+        if (shared != null && !inShared) {
+            shared.hunterArrives();
+            inShared = true;
+        }
+        if (hunter.getHunterName() != welcomedName) {
+            // the same hunter arrives in town after town, so the welcomes are only built again for a new name
+            welcomedName = hunter.getHunterName();
+            welcome = "Welcome to town, " + welcomedName + "." + "\nWe're just a sleepy little town with mild mannered folk.";
+            toughWelcome = "Welcome to town, " + welcomedName + "." + "\nIt's pretty rough around here, so watch yourself.";
+        }
 
         if (toughTown) {
-            printMessage += "\nIt's pretty rough around here, so watch yourself.";
+            printMessage = toughWelcome;
         } else {
-            printMessage += "\nWe're just a sleepy little town with mild mannered folk.";
+            printMessage = welcome;
         }
     }
 
@@ -69,28 +308,70 @@ public class Town {
     public boolean leaveTown() {
         boolean canLeaveTown = terrain.canCrossTerrain(hunter);
         if (canLeaveTown) {
-            String item = terrain.getNeededItem();
-            printMessage = "You used your " + textColor.PURPLE_BOLD_BRIGHT + item + textColor.RESET + " to cross the " +  textColor.CYAN_BRIGHT + terrain.getTerrainName() + textColor.RESET + ".";
-            if (halfChance() && !(mode.equals("e"))) {
-                hunter.removeItemFromKit(item);
-                printMessage += "\nUnfortunately, you lost your " + textColor.PURPLE_BOLD_BRIGHT + item + textColor.RESET + ".";
+            printMessage = terrain.getCrossedMessage();
+            if (halfChance() && difficulty.hasItemLoss()) {
+                hunter.removeItemFromKit(terrain.getNeededItem());
+                printMessage = terrain.getItemLostMessage();
+                if (counted) {
+                    ITEMS_LOST.increment();
+                }
+                if (events != null) {
+                    events.accept(new GameEvent.ItemLost(hunter.getHunterName(), terrain.getNeededItem(), terrainId));
+                }
                 return false;
             }
+            if (counted) {
+                CROSSINGS.increment();
+            }
+            if (events != null) {
+                events.accept(new GameEvent.TerrainCrossed(hunter.getHunterName(), terrainId, terrain.getNeededItem()));
+            }
             return true;
         }
 
-        printMessage = "You can't leave town, " + hunter.getHunterName() + ". You don't have a " + textColor.PURPLE_BOLD_BRIGHT + terrain.getNeededItem() + textColor.RESET + ".";
+        if (counted) {
+            STUCK.increment();
+        }
+
+        if (stuckMessage == null) {
+            stuckMessage = "You can't leave town, " + hunter.getHunterName() + ". You don't have a " + textColor.PURPLE_BOLD_BRIGHT + terrain.getNeededItem() + textColor.RESET + ".";
+        }
+        printMessage = stuckMessage;
         return false;
     }
 
     /**
-     * Handles calling the enter method on shop whenever the user wants to access the shop.
+     * Takes the hunter into the shop whenever the user wants to access it; the shop asks its first question, and the
+     * player's answers are passed on with answerShop().
      *
      * @param choice If the user wants to buy or sell items at the shop.
      */
-    public void enterShop(String choice) {
-        shop.enter(hunter, choice);
+    public void openShop(String choice) {
+        goldBeforeShop = hunter.getGold();
+        inShop = true;
+        shop.open(hunter, choice);
+    }
+
+    /**
+     * Passes the player's answer on to the shop.
+     *
+     * @param line The answer, or null if the player has no more input.
+     * @return true if the shop is waiting for another answer, false once the hunter has left it.
+     */
+    public boolean answerShop(String line) {
+        if (shop.answer(hunter, line)) {
+            return true;
+        }
+        inShop = false;
         printMessage = "You left the shop";
+        if (events != null && hunter.getGold() != goldBeforeShop) {
+            events.accept(new GameEvent.GoldChanged(hunter.getHunterName(), GameEvent.Cause.SHOP, hunter.getGold() - goldBeforeShop, hunter.getGold()));
+        }
+        return false;
+    }
+
+    public boolean isInShop() {
+        return inShop;
     }
 
     /**
@@ -100,30 +381,41 @@ public class Town {
      */
 
     public void huntForTreasure() {
-        if (!searched) {
-            System.out.println( textColor.WHITE_BOLD_BRIGHT + "You found a... \n"  + textColor.GREEN_BOLD_BRIGHT + treasure + textColor.WHITE_BOLD_BRIGHT + "!" + textColor.RESET);
-            searched = true;
-            hunter.addTreasure(treasure);
+        if (claimSearch()) {
+            printMessage = null; // built by getLatestNews() if anyone reads it
+            boolean kept = hunter.addTreasure(treasure);
+            if (events != null) {
+                events.accept(new GameEvent.TreasureFound(hunter.getHunterName(), treasure, kept));
+            }
         } else {
-            System.out.println(textColor.WHITE_BOLD_BRIGHT + "You have already searched this town for treasure!" + textColor.RESET);
+            printMessage = textColor.WHITE_BOLD_BRIGHT + "You have already searched this town for treasure!" + textColor.RESET;
         }
     }
 
     public void digForGold() {
-        if (!digged && hunter.hasItemInKit("shovel")) {
+        if (hunter.hasItemInKit(Items.SHOVEL) && claimDig()) {
             if (halfChance()){
-                int gold = (int) (Math.random() * 20) + 1;
-                System.out.println( textColor.WHITE_BOLD_BRIGHT + "You found ... "  + textColor.YELLOW_BOLD_BRIGHT + gold + " gold" + textColor.WHITE_BOLD_BRIGHT + "!" + textColor.RESET);
+                int gold = (int) (random.nextDouble() * 20) + 1;
+                printMessage = GOLD_FOUND[gold];
                 hunter.changeGold(gold);
+                if (counted) {
+                    DIGS_WITH_GOLD.increment();
+                    DUG_GOLD.add(gold);
+                }
+                if (events != null) {
+                    events.accept(new GameEvent.GoldChanged(hunter.getHunterName(), GameEvent.Cause.DIG, gold, hunter.getGold()));
+                }
             } else {
-                System.out.println(textColor.WHITE_BOLD_BRIGHT + "You found nothing (You dug but only found dirt)" + textColor.RESET);
+                printMessage = textColor.WHITE_BOLD_BRIGHT + "You found nothing (You dug but only found dirt)" + textColor.RESET;
+                if (counted) {
+                    DIGS_WITH_DIRT.increment();
+                }
             }
-            digged = true;
         } else {
-            if (!(hunter.hasItemInKit("shovel"))){
-                System.out.println(textColor.WHITE_BOLD_BRIGHT + "You don't got a shovel?!" + textColor.RESET);
-            } else if (hunter.hasItemInKit("shovel")) {
-                System.out.println(textColor.WHITE_BOLD_BRIGHT + "You have already dug for gold here!" + textColor.RESET);
+            if (!(hunter.hasItemInKit(Items.SHOVEL))){
+                printMessage = textColor.WHITE_BOLD_BRIGHT + "You don't got a shovel?!" + textColor.RESET;
+            } else if (hunter.hasItemInKit(Items.SHOVEL)) {
+                printMessage = textColor.WHITE_BOLD_BRIGHT + "You have already dug for gold here!" + textColor.RESET;
             }
         }
     }
@@ -137,46 +429,68 @@ public class Town {
         }
 
 
-        if (Math.random() > noTroubleChance) {
+        if (random.nextDouble() > noTroubleChance) {
             printMessage = textColor.RED_BRIGHT + textColor.WHITE_BOLD_BRIGHT + "You couldn't find any trouble" + textColor.RESET;
+            if (counted) {
+                NO_TROUBLE.increment();
+            }
+            if (events != null) {
+                events.accept(new GameEvent.BrawlResolved(hunter.getHunterName(), GameEvent.BrawlResolved.Outcome.NO_TROUBLE, 0, toughTown));
+            }
         } else {
-            printMessage = textColor.RED_BRIGHT + "You want trouble, stranger!  You got it!\nOof! Umph! Ow!\n" + textColor.RESET;
-            int goldDiff = (int) (Math.random() * 10) + 1;
-            if (Math.random() > noTroubleChance) {
-                printMessage += textColor.RED_BRIGHT + "Okay, stranger! You proved yer mettle. Here, take my gold." + textColor.RESET;
-                printMessage += textColor.RED_BRIGHT + "\nYou won the brawl and receive " + textColor.YELLOW_BRIGHT + goldDiff + " gold." + textColor.RESET;
+            int goldDiff = (int) (random.nextDouble() * 10) + 1;
+            int goldBefore = hunter.getGold();
+            if (random.nextDouble() > noTroubleChance) {
+                printMessage = BRAWL_WON[goldDiff];
                 hunter.changeGold(goldDiff);
+                if (counted) {
+                    BRAWLS_WON.increment();
+                    BRAWL_GOLD_WON.add(goldDiff);
+                }
+                publishBrawl(GameEvent.BrawlResolved.Outcome.WON, goldDiff, goldBefore);
             } else {
-                printMessage += textColor.RED_BRIGHT + "That'll teach you to go lookin' fer trouble in MY town! Now pay up!";
-                printMessage += textColor.RED_BRIGHT + "\nYou lost the brawl and pay " + textColor.YELLOW_BRIGHT + goldDiff + " gold." + textColor.RESET;
+                printMessage = BRAWL_LOST[goldDiff];
                 hunter.changeGold(-goldDiff);
+                if (counted) {
+                    BRAWLS_LOST.increment();
+                    BRAWL_GOLD_LOST.add(goldDiff);
+                }
+                publishBrawl(GameEvent.BrawlResolved.Outcome.LOST, goldDiff, goldBefore);
             }
         }
     }
 
+    private void publishBrawl(GameEvent.BrawlResolved.Outcome outcome, int goldDiff, int goldBefore) {
+        if (events != null) {
+            events.accept(new GameEvent.BrawlResolved(hunter.getHunterName(), outcome, goldDiff, toughTown));
+            events.accept(new GameEvent.GoldChanged(hunter.getHunterName(), GameEvent.Cause.BRAWL, hunter.getGold() - goldBefore, hunter.getGold()));
+        }
+    }
+
     public String toString() {
-        return "This nice little town is surrounded by " + textColor.CYAN_BOLD + terrain.getTerrainName() + textColor.RESET + ".";
+        return DESCRIPTIONS[terrainId];
     }
 
     /**
-     * Determines the surrounding terrain for a town, and the item needed in order to cross that terrain.
+     * Determines the surrounding terrain for a town, and so the item needed in order to cross that terrain.
      *
-     * @return A Terrain object.
+     * @param random The RandomSource for the roll.
+     * @return The id of the terrain in TERRAIN_NAMES.
      */
-    private Terrain getNewTerrain() {
-        double rnd = Math.random();
+    static int rollTerrainId(RandomSource random) {
+        double rnd = random.nextDouble();
         if (rnd < (1.0/6)) {
-            return new Terrain("Mountains", "Rope");
+            return 0; // Mountains
         } else if (rnd < (1.0/3)) {
-            return new Terrain("Ocean", "Boat");
+            return 1; // Ocean
         } else if (rnd < (1.0/2)) {
-            return new Terrain("Plains", "Horse");
+            return 2; // Plains
         } else if (rnd < (2.0/3)) {
-            return new Terrain("Desert", "Water");
+            return 3; // Desert
         } else if (rnd < (5.0/6)) {
-            return new Terrain("Jungle", "Machete");
+            return 4; // Jungle
         } else {
-            return new Terrain("Marsh", "Boots");
+            return 5; // Marsh
         }
     }
 
@@ -186,7 +500,7 @@ public class Town {
      * @return true if the item broke.
      */
     private boolean halfChance() {
-        double rand = Math.random();
+        double rand = random.nextDouble();
         return (rand < 0.5);
     }
 }
\ No newline at end of file
@@ -1,5 +1,5 @@
 import java.awt.*;
-import java.util.Scanner;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class is responsible for controlling the Treasure Hunter game.<p>
@@ -11,109 +11,368 @@ import java.util.Scanner;
 
 public class TreasureHunter {
     // static variables
-    private static final Scanner SCANNER = new Scanner(System.in);
+    static final String[] TREASURES = {"Crown","Trophy","Gem","Dust"};
+    private static final String MENU = "\n(B)uy something at the shop."
+            + "\n(S)ell something at the shop."
+            + "\n(M)ove on to a different town."
+            + "\n(H)unt for treasure!"
+            + "\n(D)ig for gold!"
+            + "\n(L)ook for trouble!"
+            + "\nGive up the hunt and e(X)it."
+            + "\nAsk for a hint (?).";
+    private static final int HINT_HORIZON = 150; // turns played out by each of the hint's rollouts
+
+    // what players choose, and how long the game takes to carry it out, across every game (see Metrics)
+    private static final LongAdder BUY_CHOICES = Metrics.counter("action.buy");
+    private static final LongAdder SELL_CHOICES = Metrics.counter("action.sell");
+    private static final LongAdder MOVE_CHOICES = Metrics.counter("action.move");
+    private static final LongAdder TROUBLE_CHOICES = Metrics.counter("action.lookForTrouble");
+    private static final LongAdder HUNT_CHOICES = Metrics.counter("action.hunt");
+    private static final LongAdder DIG_CHOICES = Metrics.counter("action.dig");
+    private static final LongAdder EXIT_CHOICES = Metrics.counter("action.exit");
+    private static final LongAdder INVALID_CHOICES = Metrics.counter("action.invalid");
+    private static final LongAdder HINT_CHOICES = Metrics.counter("action.hint");
+    private static final LatencyHistogram TURN_TIME = Metrics.histogram("turn.nanos");
+
+    // what the game is waiting for the player to answer (see accept())
+    private static final int ASKING_NAME = 0;
+    private static final int ASKING_MODE = 1;
+    private static final int AT_MENU = 2;
+    private static final int IN_SHOP = 3;
+    private static final int OVER = 4;
 
     // instance variables
     private Town currentTown;
     private Hunter hunter;
     private boolean hardMode;
-    private String mode;
-    private String[] treasures = {"Crown","Trophy","Gem","Dust"};
-    private OutputWindow display;
+    private DifficultyProfile difficulty;
+    private String[] treasures = TREASURES;
+    private Display display;
+    private RandomSource random;
+    private InputSource input;
+    private int turns;
+    private int turnLimit = Integer.MAX_VALUE;
+    private WorldMap world;  // null unless playing in world mode
+    private boolean sharedWorld; // the world's towns are shared with every other game on the map
+    private int townNumber;  // where the hunter is on the world map
+    private EventSink events; // null unless something wants the game's events
+    private long hintBudgetMillis = 50;
+    private HintSearch hints; // made the first time a hint is asked for
+    private Leaderboard leaderboard; // null unless finished runs are ranked
+    private Market market; // null unless playing in market mode
+    private int stage = OVER;
+    private String name;       // the hunter's name, until the mode is known and the hunter can be made
+    private String choice = ""; // the last menu choice
+    private long turnNanos;    // the game's own work on the turn so far, not counting waits for the shop's answers
 
     /**
-     * Constructs the Treasure Hunter game.
+     * Constructs the Treasure Hunter game, played from the keyboard.
      */
     public TreasureHunter() {
+        this(new SplittableRandomSource(), StreamInput.STDIN);
+    }
+
+    /**
+     * Constructs the Treasure Hunter game.
+     *
+     * @param random The RandomSource used for every town in the game.
+     * @param input Where every line the player types comes from, shop answers included; null for a game whose lines
+     *              are handed to accept() instead of read by play().
+     */
+    public TreasureHunter(RandomSource random, InputSource input) {
         // these will be initialized in the play method
         currentTown = null;
         hunter = null;
+        this.random = random;
+        this.input = input;
+    }
+
+    /**
+     * Plays the whole game, reading every line the player types from the game's InputSource.
+     *
+     * @param display Where the game is shown: the Swing window, a terminal, or nowhere.
+     */
+    public void play(Display display) {
+        playOut(start(display));
+    }
+
+    /**
+     * Carries on a saved game from where it was saved, instead of starting a new one, and plays it to the end
+     * reading from the game's InputSource; see start(GameSnapshot, Display).
+     *
+     * @param snapshot The saved game.
+     * @param display Where the game is shown.
+     */
+    public void resume(GameSnapshot snapshot, Display display) {
+        playOut(start(snapshot, display));
+    }
+
+    private void playOut(boolean waiting) {
+        try {
+            while (waiting) {
+                waiting = accept(input.nextLine());
+            }
+        } finally {
+            // a player who quits or hangs up in the shared world is no longer in town
+            abandon();
+        }
     }
 
     /**
-     * Starts the game; this is the only public method
+     * Starts the game without reading anything: it asks the player's name and returns.
+     * Each line the player types is then handed to accept() when it arrives, so a game waiting for its player
+     * doesn't hold a thread (see GameServer).
+     *
+     * @param display Where the game is shown.
+     * @return true, since the game is waiting for the player's name.
      */
-    public void play(OutputWindow display) {
+    public boolean start(Display display) {
         this.display = display;
         welcomePlayer();
-        enterTown();
-        showMenu();
+        stage = ASKING_NAME;
+        return true;
+    }
+
+    /**
+     * Starts a saved game from where it was saved, without reading anything; lines are then handed to accept().
+     * A game saved in world mode carries on in the same town of the map, so call setWorld() or setSharedWorld() with
+     * the map it was played on first; market mode follows setMarket(), as it does for a new game.
+     *
+     * @param snapshot The saved game.
+     * @param display Where the game is shown.
+     * @return true if the game is waiting for the player's next move, false if the saved game was already over.
+     * @throws IllegalStateException if the game was saved in world mode and this game isn't on the same map (the same
+     *                               size and seed) in the same kind of world, or the other way round.
+     */
+    public boolean start(GameSnapshot snapshot, Display display) {
+        int worldTowns = world == null ? 0 : world.getTowns();
+        if (snapshot.getWorldTowns() != worldTowns
+                || (worldTowns != 0 && (snapshot.getWorldSeed() != world.getSeed() || snapshot.isSharedWorld() != sharedWorld))) {
+            throw new IllegalStateException("The game was saved " + (snapshot.getWorldTowns() == 0 ? "outside world mode"
+                    : "on a " + (snapshot.isSharedWorld() ? "shared " : "") + "world map of " + snapshot.getWorldTowns()
+                    + " towns with seed " + snapshot.getWorldSeed())
+                    + ", so it can't be carried on here");
+        }
+        this.display = display;
+        hunter = snapshot.toHunter();
+        difficulty = snapshot.getDifficulty();
+        Shop shop = new Shop(difficulty, snapshot.getMarkdown(), Shop.DEFAULT_CATALOG, display, input);
+        shop.setMarket(market);
+        currentTown = snapshot.toTown(shop, random);
+        townNumber = snapshot.getTownNumber();
+        turns = snapshot.getTurns();
+        if (sharedWorld) {
+            // the shared town's claims are whatever the other players have left of it by now
+            currentTown.enter(world.sharedTowns(difficulty)[townNumber]);
+        }
+        currentTown.setEventSink(events);
+        currentTown.hunterArrives(hunter);
+        return nextTurn();
+    }
+
+    /**
+     * Plays the player's next line, which answers whatever the game asked last: the name, the mode, the next move,
+     * or one of the shop's questions.
+     *
+     * @param line The line, or null if the player has no more input, which counts as choosing to e(X)it.
+     * @return true if the game is waiting for another line, false once it is over.
+     */
+    public boolean accept(String line) {
+        if (stage == ASKING_NAME) {
+            name = lowerCase(line);
+            display.addTextToWindow("\n\n\nHard/Normal/Easy Mode? (h/n/e): ",Color.red);
+            display.flush();
+            stage = ASKING_MODE;
+            return true;
+        } else if (stage == ASKING_MODE) {
+            // the mode is looked up once here; towns and shops are handed the same profile from now on
+            difficulty = DifficultyProfile.forCode(lowerCase(line));
+            // set hunter instance variable
+            hunter = difficulty.newHunter(name);
+            enterTown();
+            return nextTurn();
+        } else if (stage == AT_MENU) {
+            choice = lowerCase(line);
+            long start = System.nanoTime();
+            processChoice(choice);
+            turnNanos += System.nanoTime() - start;
+            if (currentTown.isInShop()) {
+                stage = IN_SHOP;
+                return true;
+            }
+            return endTurn();
+        } else if (stage == IN_SHOP) {
+            long start = System.nanoTime();
+            boolean shopping = currentTown.answerShop(line);
+            turnNanos += System.nanoTime() - start;
+            return shopping || endTurn();
+        }
+        return false;
+    }
+
+    /**
+     * Ends the game where it stands, e.g. when the player hangs up: a hunter in the shared world leaves their town.
+     * A game that is already over is left as it is.
+     */
+    public void abandon() {
+        stage = OVER;
+        if (currentTown != null) {
+            currentTown.vacate();
+        }
+    }
+
+    /**
+     * @return true if the game has ended, or hasn't been started.
+     */
+    public boolean isOver() {
+        return stage == OVER;
+    }
+
+    // accessors, used to save the game
+    public Hunter getHunter() {
+        return hunter;
+    }
+
+    public Town getCurrentTown() {
+        return currentTown;
+    }
+
+    public DifficultyProfile getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * @return The number of menu choices made so far.
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * Stops the game after the given number of menu choices, e.g. to fast-forward a replay to a turn.
+     *
+     * @param turnLimit The number of menu choices to play.
+     */
+    public void setTurnLimit(int turnLimit) {
+        this.turnLimit = turnLimit;
+    }
+
+    /**
+     * Publishes a GameEvent for every outcome in the game, e.g. to an EventBus.
+     *
+     * @param events The sink, or null for none; set it before the game starts.
+     */
+    public void setEventSink(EventSink events) {
+        this.events = events;
+    }
+
+    /**
+     * Submits the run to the leaderboard when the game ends, and tells the player where it ranks.
+     *
+     * @param leaderboard The leaderboard, which may be shared with other games; null for none.
+     */
+    public void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Plays in market mode: the game's shop charges the market's prices, which move with every trade made on the market.
+     *
+     * @param market The market, which may be shared with other games; null for the usual fixed prices.
+     */
+    public void setMarket(Market market) {
+        this.market = market;
+    }
+
+    /**
+     * Sets how long working out a hint may take; the longer, the more games it plays out and the closer its numbers.
+     *
+     * @param millis The time budget, in milliseconds.
+     */
+    public void setHintBudget(long millis) {
+        hintBudgetMillis = millis;
+        hints = null;
+    }
+
+    /**
+     * Plays on a fixed world map instead of rolling a new town on every move; towns remember being searched and dug.
+     *
+     * @param world The map, or null for the usual game.
+     */
+    public void setWorld(WorldMap world) {
+        this.world = world;
+        sharedWorld = false;
+        townNumber = 0;
+    }
+
+    /**
+     * Plays in the shared world: on the map's towns, shared with every other game on the same map in the same mode
+     * (see WorldMap.sharedTowns()), so whoever searches or digs a town first gets what is there.
+     *
+     * @param world The map, usually shared by every session on a server.
+     */
+    public void setSharedWorld(WorldMap world) {
+        setWorld(world);
+        sharedWorld = true;
+    }
+
+    public int getTownNumber() {
+        return townNumber;
+    }
 
+    /**
+     * @return The world map, or null if the game isn't played in world mode.
+     */
+    public WorldMap getWorld() {
+        return world;
+    }
+
+    public boolean isSharedWorld() {
+        return sharedWorld;
     }
 
     /**
-     * Creates a hunter object at the beginning of the game and populates the class member variable with it.
+     * Welcomes the player at the beginning of the game and asks their name; the hunter is made once the mode is known (see accept()).
      */
     private void welcomePlayer() {
         display.addTextToWindow("Welcome to TREASURE HUNTER!", Color.yellow);
         display.addTextToWindow("\ngoing hunting for the big treasure, eh?");
         display.addTextToWindow("\nWhat's ye name, Hunter? ");
-        String name = SCANNER.nextLine().toLowerCase();
-
-        // set hunter instance variable
-        hunter = new Hunter(name, 10);
-
-        display.addTextToWindow("\n\n\nHard/Normal/Easy Mode? (h/n/e): ",Color.red);
-        String difficulty = SCANNER.nextLine().toLowerCase();
-        if (difficulty.equals("h")) {
-            mode = "h";
-        }
-        if (difficulty.equals("e")) {
-            hunter = new Hunter(name, 20);
-            mode = "e";
-        }
-        if (difficulty.equals("s")){
-            hunter = new Hunter("Samurai " + name, 20);
-            mode = "s";
-        }
-        if (difficulty.equals("test")) {
-            hunter = new Hunter(name, 100);
-            hunter.addItem("water");
-            hunter.addItem("rope");
-            hunter.addItem("machete");
-            hunter.addItem("horse");
-            hunter.addItem("boat");
-            hunter.addItem("boots");
-            hunter.addItem("shovel");
-        }
+        display.flush();
     }
 
     /**
      * Creates a new town and adds the Hunter to it.
      */
     private void enterTown() {
-        double markdown = 0.5;
-        double toughness = 0.4;
-        if (mode.equals("h")) {
-            // in hard mode, you get less money back when you sell items
-            markdown = 0.25;
-
-            // and the town is "tougher"
-            toughness = 0.75;
-        }
-        if (mode.equals("e")) {
-            // in hard mode, you get less money back when you sell items
-            markdown = 1;
-
-            // and the town is "tougher"
-            toughness = 0.25;
-        }
-        if (mode.equals("s")) {
-            // in hard mode, you get less money back when you sell items
-            markdown = 1;
+        if (currentTown == null) {
+            // the first town makes the game's one Shop; every town after it keeps the same shop
+            Shop shop = new Shop(difficulty, Shop.DEFAULT_CATALOG, display, input);
+            shop.setMarket(market);
 
-            // and the town is "tougher"
-            toughness = 0;
+            // creating the new Town -- which we need to store as an instance
+            // variable in this class, since we need to access the Town
+            // object in other methods of this class
+            if (world == null) {
+                currentTown = new Town(shop, difficulty, treasures, random);
+            } else if (sharedWorld) {
+                currentTown = new Town(shop, difficulty, treasures, random);
+                currentTown.enter(world.sharedTowns(difficulty)[townNumber]);
+            } else {
+                currentTown = world.townAt(townNumber, shop, difficulty, random);
+            }
+            currentTown.setEventSink(events);
+        } else if (world == null) {
+            // moving on turns the same Town object into the next town instead of making a new one
+            currentTown.reset();
+        } else if (sharedWorld) {
+            townNumber = world.nextTown(townNumber, random);
+            currentTown.enter(world.sharedTowns(difficulty)[townNumber]);
+        } else {
+            world.leave(townNumber, currentTown);
+            townNumber = world.nextTown(townNumber, random);
+            world.enter(townNumber, currentTown);
         }
-        // note that we don't need to access the Shop object
-        // outside of this method, so it isn't necessary to store it as an instance
-        // variable; we can leave it as a local variable
-        Shop shop = new Shop(markdown,mode);
-
-        // creating the new Town -- which we need to store as an instance
-        // variable in this class, since we need to access the Town
-        // object in other methods of this class
-        currentTown = new Town(shop, toughness, treasures, mode);
 
         // calling the hunterArrives method, which takes the Hunter
         // as a parameter; note this also could have been done in the
@@ -123,36 +382,58 @@ public class TreasureHunter {
     }
 
     /**
-     * Displays the menu and receives the choice from the user.<p>
-     * The choice is sent to the processChoice() method for parsing.<p>
-     * This method will loop until the user chooses to exit.
+     * Ends a turn once its choice has been carried out. The turn's time is the game's own work only:
+     * the waits for the player to answer the shop's questions fall between calls to accept().
      */
-    private void showMenu() {
-        String choice = "";
+    private boolean endTurn() {
+        TURN_TIME.record(turnNanos);
+        turnNanos = 0;
+        turns++;
+        return nextTurn();
+    }
 
-        while (!choice.equals("x") && hunter.getGold() >= 0 && !hunter.hasAllTreasure()) {
+    /**
+     * Displays the menu and asks for the user's next choice, which accept() sends to the processChoice() method.<p>
+     * Once the user has chosen to exit, or the hunt is won or lost, the game ends instead.
+     *
+     * @return true if the game is waiting for the choice, false if it has ended.
+     */
+    private boolean nextTurn() {
+        if (!choice.equals("x") && hunter.getGold() >= 0 && !hunter.hasAllTreasure() && turns < turnLimit) {
             display.clear();
             display.addTextToWindow(currentTown.getLatestNews());
             display.addTextToWindow("***");
-            display.addTextToWindow("\n" + hunter);
-            display.addTextToWindow("\n" + currentTown);
-            display.addTextToWindow("\n(B)uy something at the shop.");
-            display.addTextToWindow("\n(S)ell something at the shop.");
-            display.addTextToWindow("\n(M)ove on to a different town.");
-            display.addTextToWindow("\n(H)unt for treasure!");
-            display.addTextToWindow("\n(D)ig for gold!");
-            display.addTextToWindow("\n(L)ook for trouble!");
-            display.addTextToWindow("\nGive up the hunt and e(X)it.");
-            System.out.print("\n\nWhat's your next move? ");
-            choice = SCANNER.nextLine().toLowerCase();
-            processChoice(choice);
+            // hunter and town keep their text between turns, so nothing here is rebuilt unless it changed
+            display.addTextToWindow("\n");
+            display.addTextToWindow(hunter.toString());
+            display.addTextToWindow("\n");
+            display.addTextToWindow(currentTown.toString());
+            display.addTextToWindow(MENU);
+            display.print("\n\nWhat's your next move? ");
+            display.flush();
+            stage = AT_MENU;
+            return true;
         }
         if (hunter.hasAllTreasure()){
-            System.out.println(textColor.YELLOW_BOLD_BRIGHT + "Congrats you collected all the treasures of the land" + textColor.RESET);
+            display.println(textColor.YELLOW_BOLD_BRIGHT + "Congrats you collected all the treasures of the land" + textColor.RESET);
         } else if (hunter.getGold() < 0){
-            System.out.println(textColor.RED_BACKGROUND_BRIGHT + "You ran out of money and is forced to stop your hunt and dreams." + textColor.RESET);
+            display.println(textColor.RED_BACKGROUND_BRIGHT + "You ran out of money and is forced to stop your hunt and dreams." + textColor.RESET);
         }
-        System.out.println("\nUntil next time... bye bye");
+        if (leaderboard != null) {
+            int rank = leaderboard.submit(hunter.getHunterName(), difficulty, Long.bitCount(hunter.getTreasureMask()), hunter.getGold(), turns);
+            display.println("\nYour best run ranks #" + rank + " of " + leaderboard.size(difficulty) + " in " + difficulty.getName() + " mode.");
+        }
+        display.println("\nUntil next time... bye bye");
+        display.flush();
+        abandon();
+        return false;
+    }
+
+    /**
+     * Running out of input counts as choosing to e(X)it.
+     */
+    private static String lowerCase(String line) {
+        return line == null ? "x" : line.toLowerCase();
     }
 
     /**
@@ -161,23 +442,43 @@ public class TreasureHunter {
      */
     private void processChoice(String choice) {
         if (choice.equals("b") || choice.equals("s")) {
-            currentTown.enterShop(choice);
+            (choice.equals("b") ? BUY_CHOICES : SELL_CHOICES).increment();
+            // the shop asks its questions; accept() passes the answers on until the hunter leaves it
+            currentTown.openShop(choice);
         } else if (choice.equals("m")) {
+            MOVE_CHOICES.increment();
             if (currentTown.leaveTown()) {
                 // This town is going away so print its news ahead of time.
-                System.out.println(currentTown.getLatestNews());
+                display.println(currentTown.getLatestNews());
                 enterTown();
             }
         } else if (choice.equals("l")) {
+            TROUBLE_CHOICES.increment();
             currentTown.lookForTrouble();
         } else if (choice.equals("h")) {
+            HUNT_CHOICES.increment();
             currentTown.huntForTreasure();
         } else if (choice.equals("d")) {
+            DIG_CHOICES.increment();
             currentTown.digForGold();
         } else if (choice.equals("x")) {
-            System.out.println("Fare thee well, " + hunter.getHunterName() + "!");
+            EXIT_CHOICES.increment();
+            display.println("Fare thee well, " + hunter.getHunterName() + "!");
+        } else if (choice.equals("?")) {
+            HINT_CHOICES.increment();
+            if (world != null || market != null) {
+                // the rollouts roll a new town on every move at the shop's fixed prices, which isn't how these modes play
+                display.println("There are no hints in world or market mode.");
+                return;
+            }
+            if (hints == null) {
+                hints = new HintSearch(difficulty, hintBudgetMillis, HINT_HORIZON);
+            }
+            // the search rolls its own dice, so the hint doesn't change what happens next in the game
+            display.println(hints.search(hunter, currentTown, System.nanoTime()).toString());
         } else {
-            System.out.println(textColor.RED_BOLD_BRIGHT + "Yikes! That's an invalid option! Try again." + textColor.RESET);
+            INVALID_CHOICES.increment();
+            display.println(textColor.RED_BOLD_BRIGHT + "Yikes! That's an invalid option! Try again." + textColor.RESET);
         }
     }
 }
\ No newline at end of file
@@ -1,7 +1,113 @@
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
 public class TreasureHunterRunner {
-    public static void main(String[] args) {
-        OutputWindow display = new OutputWindow();
-        TreasureHunter game = new TreasureHunter();
+    // constants
+    private static final int EVENT_BUFFER = 4096;
+
+    /**
+     * Starts the game in the Swing window, or in the terminal when run with -terminal or on a machine without a screen.<p>
+     * Run with -script followed by a file to play the lines in the file instead of reading the keyboard,
+     * with -record followed by a file to save a ReplayLog of the game, and with -modes followed by a file to add the
+     * difficulty modes in it (see DifficultyProfile.load()), with -metrics followed by a file to write the game's Metrics to it every 10 seconds,
+     * and with -events followed by a file to log every GameEvent to it from an EventBus subscriber. Run with -world followed by a number of towns to play on a WorldMap of that size,
+     * with -leaderboard followed by a file to rank the finished run on the leaderboard kept in it, and with -market to play with market prices.
+     * A game in market mode can't be recorded: its prices move with the market's ticks, so a replay wouldn't see the same prices.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean terminal = GraphicsEnvironment.isHeadless();
+        InputSource input = StreamInput.STDIN;
+        Path recordFile = null;
+        int worldSize = 0;
+        Path metricsFile = null;
+        Path eventsFile = null;
+        Path leaderboardFile = null;
+        boolean market = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-terminal")) {
+                terminal = true;
+            } else if (args[i].equals("-script") && i + 1 < args.length) {
+                input = ScriptedInput.load(Path.of(args[++i]));
+                terminal = true;
+            } else if (args[i].equals("-record") && i + 1 < args.length) {
+                recordFile = Path.of(args[++i]);
+            } else if (args[i].equals("-world") && i + 1 < args.length) {
+                worldSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-events") && i + 1 < args.length) {
+                eventsFile = Path.of(args[++i]);
+            } else if (args[i].equals("-metrics") && i + 1 < args.length) {
+                metricsFile = Path.of(args[++i]);
+            } else if (args[i].equals("-leaderboard") && i + 1 < args.length) {
+                leaderboardFile = Path.of(args[++i]);
+            } else if (args[i].equals("-market")) {
+                market = true;
+            } else if (args[i].equals("-modes") && i + 1 < args.length) {
+                DifficultyProfile.load(Path.of(args[++i]));
+            }
+        }
+
+        if (market && recordFile != null) {
+            System.err.println("-record can't be used with -market: market prices move with the clock, so the game couldn't be replayed.");
+            System.exit(2);
+        }
+
+        Metrics.registerMBean();
+        if (metricsFile != null) {
+            Metrics.startDump(metricsFile, 10);
+        }
+
+        long seed = new SplittableRandom().nextLong();
+        WorldMap world = worldSize > 0 ? new WorldMap(seed, worldSize) : null;
+        ReplayLog.Writer log = null;
+        if (recordFile != null) {
+            log = new ReplayLog.Writer(recordFile, seed, world);
+            input = new RecordingInput(input, log);
+        }
+
+        Display display;
+        if (terminal) {
+            display = new TerminalDisplay();
+        } else {
+            display = new OutputWindow();
+        }
+        TreasureHunter game = new TreasureHunter(new SplittableRandomSource(seed), input);
+        if (world != null) {
+            game.setWorld(world);
+        }
+        EventBus events = null;
+        EventLog eventLog = null;
+        if (eventsFile != null) {
+            events = new EventBus(EVENT_BUFFER);
+            eventLog = new EventLog(eventsFile);
+            events.subscribe("log", eventLog);
+            game.setEventSink(events);
+        }
+        if (market) {
+            Market prices = new Market(Shop.DEFAULT_CATALOG);
+            prices.start(Market.DEFAULT_TICK_MILLIS);
+            game.setMarket(prices);
+        }
+        Leaderboard leaderboard = null;
+        if (leaderboardFile != null) {
+            leaderboard = new Leaderboard(leaderboardFile);
+            game.setLeaderboard(leaderboard);
+        }
         game.play(display);
+        if (leaderboard != null) {
+            leaderboard.close();
+        }
+        if (log != null) {
+            log.finish(game);
+            log.close();
+        }
+        if (events != null) {
+            events.close();
+            eventLog.close();
+        }
+        if (metricsFile != null) {
+            Metrics.dump(metricsFile);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,352 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * A WorldMap is a fixed world of towns for the optional world mode, generated once from a seed instead of rolling a
+ * new town on every move.<p>
+ * Every town has DEGREE roads leading out of it: one to each neighbour on a ring, so every town can be reached,
+ * and the rest to towns picked at random. To leave a town along any of its roads the hunter needs the item for the
+ * terrain around it, so the item a road needs is the one for its starting town's terrain.<p>
+ * Everything is kept in primitive arrays indexed by town number, with the roads in one array where town t's roads
+ * are DEGREE entries starting at t * DEGREE. Each town is generated from its own seed, so the towns are filled in
+ * parallel and in place, and looking up a town or a road during a turn is a single array read.<p>
+ * Route queries (the shortest route between two towns, and the cheapest set of items that makes a route possible)
+ * search the whole map, so their answers are kept in a small least-recently-used cache.
+ */
+
+public class WorldMap {
+    // constants
+    public static final int DEGREE = 4;
+    private static final int TERRAINS = Town.TERRAIN_NAMES.length;
+    private static final int ROUTE_CACHE_SIZE = 1024;
+    private static final int SEARCHED = 1;
+    private static final int DUG = 2;
+
+    // instance variables
+    private final long seed;
+    private final int towns;
+    private final int[] roads;
+    private final byte[] terrain;
+    private final byte[] treasure;
+    private final float[] toughRoll;
+    private final byte[] visited; // SEARCHED and DUG, remembered for when the hunter comes back
+    private final Map<DifficultyProfile, SharedTown[]> sharedTowns = new ConcurrentHashMap<>();
+    private final int[] terrainCosts = new int[TERRAINS];
+    private final Map<Long, Route> routeCache = new LinkedHashMap<>(ROUTE_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Route> eldest) {
+            return size() > ROUTE_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Generates a world.
+     *
+     * @param seed The seed; the same seed and size always give the same world.
+     * @param towns The number of towns, at least 2.
+     */
+    public WorldMap(long seed, int towns) {
+        this.seed = seed;
+        this.towns = towns;
+        roads = new int[towns * DEGREE];
+        terrain = new byte[towns];
+        treasure = new byte[towns];
+        toughRoll = new float[towns];
+        visited = new byte[towns];
+        for (int id = 0; id < TERRAINS; id++) {
+            terrainCosts[id] = Shop.DEFAULT_CATALOG.getCost(Items.find(Town.TERRAIN_ITEMS[id].toLowerCase()));
+        }
+
+        // a town's seed only depends on the world's seed and its number, so it doesn't matter which thread fills it in
+        SplittableRandom seeds = new SplittableRandom(seed);
+        long gamma = seeds.nextLong() | 1;
+        long base = seeds.nextLong();
+        IntStream.range(0, towns).parallel().forEach(town -> generateTown(town, new SplittableRandom(base + town * gamma)));
+    }
+
+    private void generateTown(int town, SplittableRandom random) {
+        terrain[town] = (byte) random.nextInt(TERRAINS);
+        treasure[town] = (byte) random.nextInt(TreasureHunter.TREASURES.length);
+        toughRoll[town] = (float) random.nextDouble();
+        int first = town * DEGREE;
+        roads[first] = (town + 1) % towns;
+        roads[first + 1] = (town + towns - 1) % towns;
+        for (int road = 2; road < DEGREE; road++) {
+            int to = random.nextInt(towns - 1);
+            roads[first + road] = to >= town ? to + 1 : to; // never a road back to the same town
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getTowns() {
+        return towns;
+    }
+
+    public int getTerrainId(int town) {
+        return terrain[town];
+    }
+
+    /**
+     * @param town The town.
+     * @param road Which of the town's roads, 0 to DEGREE - 1.
+     * @return The town the road leads to.
+     */
+    public int getRoad(int town, int road) {
+        return roads[town * DEGREE + road];
+    }
+
+    /**
+     * Picks the road the hunter takes out of a town.
+     *
+     * @param random The game's RandomSource.
+     * @return The town the hunter ends up in.
+     */
+    public int nextTown(int town, RandomSource random) {
+        return roads[town * DEGREE + (int) (random.nextDouble() * DEGREE)];
+    }
+
+    /**
+     * Builds the Town for a town on the map, as the hunter left it if they have been there before.
+     *
+     * @param town The town's number.
+     * @param shop The town's shoppe.
+     * @param difficulty The difficulty, whose toughness decides whether the town is tough.
+     * @param random The game's RandomSource.
+     */
+    public Town townAt(int town, Shop shop, DifficultyProfile difficulty, RandomSource random) {
+        return new Town(shop, difficulty, random, terrain[town], toughRoll[town] < difficulty.getToughness(),
+                TreasureHunter.TREASURES[treasure[town]], (visited[town] & SEARCHED) != 0, (visited[town] & DUG) != 0);
+    }
+
+    /**
+     * The towns of the shared-world mode, where many hunters play the same world at once: a SharedTown for every town
+     * on the map, made the first time a difficulty asks, so every game on this map in that mode gets the same towns.
+     * Towns already searched or dug by a single-player game on this map start out fresh.
+     *
+     * @param difficulty The difficulty, whose toughness decides whether each town is tough.
+     * @return The towns, indexed by town number.
+     */
+    public SharedTown[] sharedTowns(DifficultyProfile difficulty) {
+        return sharedTowns.computeIfAbsent(difficulty, mode -> {
+            SharedTown[] shared = new SharedTown[towns];
+            for (int town = 0; town < towns; town++) {
+                shared[town] = new SharedTown(terrain[town], toughRoll[town] < mode.getToughness(), TreasureHunter.TREASURES[treasure[town]]);
+            }
+            return shared;
+        });
+    }
+
+    /**
+     * Turns an existing Town into a town on the map, as the hunter left it if they have been there before.
+     *
+     * @param town The town's number.
+     * @param into The Town object to reuse; it keeps its shop, difficulty and RandomSource.
+     */
+    public void enter(int town, Town into) {
+        into.restore(terrain[town], toughRoll[town] < into.getDifficulty().getToughness(),
+                TreasureHunter.TREASURES[treasure[town]], (visited[town] & SEARCHED) != 0, (visited[town] & DUG) != 0);
+    }
+
+    /**
+     * Remembers what the hunter did in a town, for when they come back.
+     */
+    public void leave(int town, Town state) {
+        visited[town] = (byte) ((state.hasBeenSearched() ? SEARCHED : 0) | (state.hasBeenDug() ? DUG : 0));
+    }
+
+    /**
+     * Finds the route with the fewest roads between two towns, ignoring which items the roads need.
+     *
+     * @return The route, or null if there is none.
+     */
+    public Route shortestRoute(int from, int to) {
+        return search(from, to, -1);
+    }
+
+    /**
+     * Finds the cheapest set of items a hunter needs to get from one town to another, and the shortest route using only those items.
+     * Each of the 64 sets of terrain items is tried from the cheapest up, so the first set that reaches the town wins.
+     *
+     * @return The route, with the items it needs, or null if there is none.
+     */
+    public Route cheapestRoute(int from, int to) {
+        Long key = ((long) from << 32) | to;
+        synchronized (routeCache) {
+            Route cached = routeCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Integer[] sets = new Integer[1 << TERRAINS];
+        for (int set = 0; set < sets.length; set++) {
+            sets[set] = set;
+        }
+        Arrays.sort(sets, (a, b) -> Integer.compare(costOf(a), costOf(b)));
+        Route route = null;
+        for (int set : sets) {
+            route = search(from, to, set);
+            if (route != null) {
+                break;
+            }
+        }
+
+        synchronized (routeCache) {
+            routeCache.put(key, route);
+        }
+        return route;
+    }
+
+    private int costOf(int terrainSet) {
+        int cost = 0;
+        for (int id = 0; id < TERRAINS; id++) {
+            if ((terrainSet & (1 << id)) != 0) {
+                cost += terrainCosts[id];
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Breadth-first search from one town to another, only leaving towns whose terrain is in the set.
+     *
+     * @param terrainSet One bit per terrain id, or -1 for every terrain.
+     */
+    private Route search(int from, int to, int terrainSet) {
+        int[] parent = new int[towns];
+        Arrays.fill(parent, -1);
+        int[] queue = new int[towns];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        parent[from] = from;
+        while (head < tail && parent[to] < 0) {
+            int town = queue[head++];
+            if ((terrainSet & (1 << terrain[town])) == 0) {
+                continue; // can't get out of this town with these items
+            }
+            for (int road = town * DEGREE; road < town * DEGREE + DEGREE; road++) {
+                int next = roads[road];
+                if (parent[next] < 0) {
+                    parent[next] = town;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        if (parent[to] < 0) {
+            return null;
+        }
+
+        List<Integer> path = new ArrayList<>();
+        for (int town = to; town != from; town = parent[town]) {
+            path.add(town);
+        }
+        path.add(from);
+        int[] stops = new int[path.size()];
+        long items = 0;
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = path.get(stops.length - 1 - i);
+            if (i < stops.length - 1) {
+                items |= 1L << Items.find(Town.TERRAIN_ITEMS[terrain[stops[i]]].toLowerCase());
+            }
+        }
+        return new Route(stops, items);
+    }
+
+    /**
+     * A route between two towns and the items needed to travel it.
+     */
+    public static class Route {
+        private final int[] towns;
+        private final long items;
+        private final int cost;
+
+        Route(int[] towns, long items) {
+            this.towns = towns;
+            this.items = items;
+            int cost = 0;
+            for (int id = 0; id < Items.MAX_ITEMS; id++) {
+                if ((items & (1L << id)) != 0) {
+                    cost += Shop.DEFAULT_CATALOG.getCost(id);
+                }
+            }
+            this.cost = cost;
+        }
+
+        /**
+         * @return The towns along the route, starting with the first town and ending with the last.
+         */
+        public int[] getTowns() {
+            return towns.clone();
+        }
+
+        public int getRoads() {
+            return towns.length - 1;
+        }
+
+        /**
+         * @return The items needed, one bit per item id.
+         */
+        public long getItems() {
+            return items;
+        }
+
+        /**
+         * @return What the items cost in the default shop.
+         */
+        public int getCost() {
+            return cost;
+        }
+
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(getRoads()).append(" roads, needs");
+            if (items == 0) {
+                text.append(" nothing");
+            }
+            for (int id = 0; id < Items.MAX_ITEMS; id++) {
+                if ((items & (1L << id)) != 0) {
+                    text.append(' ').append(Items.nameOf(id));
+                }
+            }
+            return text.append(" (").append(cost).append(" gold)").toString();
+        }
+    }
+
+    /**
+     * Usage: WorldMap [towns] [seed] [queries]
+     */
+    public static void main(String[] args) {
+        int towns = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        long start = System.nanoTime();
+        WorldMap world = new WorldMap(seed, towns);
+        System.out.printf("generated %,d towns in %.1f ms%n", towns, (System.nanoTime() - start) / 1e6);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < queries; i++) {
+            int from = random.nextInt(towns);
+            int to = random.nextInt(towns);
+            start = System.nanoTime();
+            Route shortest = world.shortestRoute(from, to);
+            Route cheapest = world.cheapestRoute(from, to);
+            long searched = System.nanoTime() - start;
+            start = System.nanoTime();
+            world.cheapestRoute(from, to);
+            long cached = System.nanoTime() - start;
+            System.out.printf("%d -> %d: shortest %s; cheapest %s; %.2f ms, cached %.3f ms%n",
+                    from, to, shortest, cheapest, searched / 1e6, cached / 1e6);
+        }
+    }
+}